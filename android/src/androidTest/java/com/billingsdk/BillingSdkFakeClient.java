@@ -0,0 +1,306 @@
+package com.billingsdk;
+
+import android.app.Activity;
+
+import com.android.billingclient.api.AcknowledgePurchaseResponseListener;
+import com.android.billingclient.api.BillingClient;
+import com.android.billingclient.api.BillingClientStateListener;
+import com.android.billingclient.api.BillingFlowParams;
+import com.android.billingclient.api.BillingResult;
+import com.android.billingclient.api.ConsumeResponseListener;
+import com.android.billingclient.api.ProductDetails;
+import com.android.billingclient.api.Purchase;
+import com.android.billingclient.api.PurchasesResponseListener;
+import com.android.billingclient.api.PurchasesUpdatedListener;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BillingSdkClient standing in for Google Play in load tests. Every call answers on a background
+ * thread after a random latency, fails with the configured response code at the configured rate, and
+ * drops the service connection at the disconnect rate. Product details are generated for any product
+ * id, purchase queries return `purchaseCount` purchased products of the queried type.
+ */
+public class BillingSdkFakeClient implements BillingSdkClient {
+    private interface Response {
+        void send(BillingResult billingResult);
+    }
+
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(4);
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong disconnects = new AtomicLong();
+    private volatile PurchasesUpdatedListener purchasesUpdatedListener;
+    private volatile BillingClientStateListener stateListener;
+    private volatile int connectionState = BillingClient.ConnectionState.DISCONNECTED;
+
+    private volatile long minLatency = 20;
+    private volatile long maxLatency = 200;
+    private volatile double errorRate = 0;
+    private volatile int errorCode = BillingClient.BillingResponseCode.SERVICE_UNAVAILABLE;
+    private volatile double disconnectRate = 0;
+    private volatile int purchaseCount = 10;
+
+    /**
+     * Factory to pass to BillingSdk, which always hands out this client.
+     */
+    public Factory factory() {
+        return new Factory() {
+            @Override
+            public BillingSdkClient create(PurchasesUpdatedListener listener) {
+                purchasesUpdatedListener = listener;
+                return BillingSdkFakeClient.this;
+            }
+        };
+    }
+
+    public void setLatency(long minLatency, long maxLatency) {
+        this.minLatency = minLatency;
+        this.maxLatency = Math.max(minLatency, maxLatency);
+    }
+
+    /**
+     * Fails the given share of calls, connection attempts included, with the response code.
+     */
+    public void setErrorRate(double errorRate, int errorCode) {
+        this.errorRate = errorRate;
+        this.errorCode = errorCode;
+    }
+
+    /**
+     * Drops the service connection on the given share of calls. These calls fail with SERVICE_DISCONNECTED.
+     */
+    public void setDisconnectRate(double disconnectRate) {
+        this.disconnectRate = disconnectRate;
+    }
+
+    public void setPurchaseCount(int purchaseCount) {
+        this.purchaseCount = purchaseCount;
+    }
+
+    public long getCalls() {
+        return calls.get();
+    }
+
+    public long getDisconnects() {
+        return disconnects.get();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public boolean isReady() {
+        return connectionState == BillingClient.ConnectionState.CONNECTED;
+    }
+
+    @Override
+    public int getConnectionState() {
+        return connectionState;
+    }
+
+    @Override
+    public void startConnection(final BillingClientStateListener listener) {
+        stateListener = listener;
+        connectionState = BillingClient.ConnectionState.CONNECTING;
+        final boolean fail = roll(errorRate);
+
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                connectionState = fail ? BillingClient.ConnectionState.DISCONNECTED : BillingClient.ConnectionState.CONNECTED;
+                listener.onBillingSetupFinished(createResult(fail ? errorCode : BillingClient.BillingResponseCode.OK));
+            }
+        }, getLatency(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void endConnection() {
+        connectionState = BillingClient.ConnectionState.DISCONNECTED;
+    }
+
+    @Override
+    public void queryProductDetails(final List<String> productIds, final String productType, final ProductDetailsListener listener) {
+        answer(new Response() {
+            @Override
+            public void send(BillingResult billingResult) {
+                List<ProductDetails> productDetailsList = new ArrayList<>();
+                if(billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK){
+                    for(String productId: productIds) productDetailsList.add(createProductDetails(productId, productType));
+                }
+                listener.onProductDetailsResponse(billingResult, productDetailsList);
+            }
+        });
+    }
+
+    @Override
+    public void queryPurchases(final String productType, final PurchasesResponseListener listener) {
+        answer(new Response() {
+            @Override
+            public void send(BillingResult billingResult) {
+                List<Purchase> purchases = new ArrayList<>();
+                if(billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK){
+                    for(int i = 0; i < purchaseCount; i++) purchases.add(createPurchase(productType, i));
+                }
+                listener.onQueryPurchasesResponse(billingResult, purchases);
+            }
+        });
+    }
+
+    @Override
+    public void acknowledgePurchase(String purchaseToken, final AcknowledgePurchaseResponseListener listener) {
+        answer(new Response() {
+            @Override
+            public void send(BillingResult billingResult) {
+                listener.onAcknowledgePurchaseResponse(billingResult);
+            }
+        });
+    }
+
+    @Override
+    public void consume(final String purchaseToken, final ConsumeResponseListener listener) {
+        answer(new Response() {
+            @Override
+            public void send(BillingResult billingResult) {
+                listener.onConsumeResponse(billingResult, purchaseToken);
+            }
+        });
+    }
+
+    /**
+     * The fake cannot read the products out of BillingFlowParams, so every launched flow ends as if
+     * the user canceled it.
+     */
+    @Override
+    public BillingResult launchBillingFlow(Activity activity, BillingFlowParams billingFlowParams) {
+        calls.incrementAndGet();
+        if(!isReady()) return createResult(BillingClient.BillingResponseCode.SERVICE_DISCONNECTED);
+        if(roll(errorRate)) return createResult(errorCode);
+
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                PurchasesUpdatedListener listener = purchasesUpdatedListener;
+                if(listener != null) listener.onPurchasesUpdated(createResult(BillingClient.BillingResponseCode.USER_CANCELED), Collections.<Purchase>emptyList());
+            }
+        }, getLatency(), TimeUnit.MILLISECONDS);
+        return createResult(BillingClient.BillingResponseCode.OK);
+    }
+
+    private void answer(final Response response) {
+        calls.incrementAndGet();
+        if(!isReady()){
+            response.send(createResult(BillingClient.BillingResponseCode.SERVICE_DISCONNECTED));
+            return;
+        }
+
+        final boolean disconnect = roll(disconnectRate);
+        final boolean fail = roll(errorRate);
+
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if(disconnect && isReady()){
+                    connectionState = BillingClient.ConnectionState.DISCONNECTED;
+                    disconnects.incrementAndGet();
+                    response.send(createResult(BillingClient.BillingResponseCode.SERVICE_DISCONNECTED));
+
+                    BillingClientStateListener listener = stateListener;
+                    if(listener != null) listener.onBillingServiceDisconnected();
+                    return;
+                }
+
+                response.send(createResult(fail ? errorCode : BillingClient.BillingResponseCode.OK));
+            }
+        }, getLatency(), TimeUnit.MILLISECONDS);
+    }
+
+    private long getLatency() {
+        long min = minLatency;
+        long max = maxLatency;
+        return min == max ? min : ThreadLocalRandom.current().nextLong(min, max + 1);
+    }
+
+    private static boolean roll(double rate) {
+        return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    private static BillingResult createResult(int responseCode) {
+        return BillingResult.newBuilder()
+                .setResponseCode(responseCode)
+                .setDebugMessage(responseCode == BillingClient.BillingResponseCode.OK ? "" : "Simulated response " + responseCode + ".")
+                .build();
+    }
+
+    private static ProductDetails createProductDetails(String productId, String productType) {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("productId", productId);
+            json.put("type", productType);
+            json.put("title", productId + " (Billing SDK)");
+            json.put("name", productId);
+            json.put("description", "Fake product " + productId + ".");
+            json.put("skuDetailsToken", "details." + productId);
+
+            if(BillingClient.ProductType.SUBS.equals(productType)){
+                JSONObject pricingPhase = new JSONObject();
+                pricingPhase.put("priceAmountMicros", 9990000);
+                pricingPhase.put("priceCurrencyCode", "USD");
+                pricingPhase.put("formattedPrice", "$9.99");
+                pricingPhase.put("billingPeriod", "P1M");
+                pricingPhase.put("recurrenceMode", 1);
+                pricingPhase.put("billingCycleCount", 0);
+
+                JSONObject offer = new JSONObject();
+                offer.put("basePlanId", "monthly");
+                offer.put("offerIdToken", "offer." + productId);
+                offer.put("offerTags", new JSONArray());
+                offer.put("pricingPhases", new JSONArray().put(pricingPhase));
+                json.put("subscriptionOfferDetails", new JSONArray().put(offer));
+            } else {
+                JSONObject offer = new JSONObject();
+                offer.put("priceAmountMicros", 1990000);
+                offer.put("priceCurrencyCode", "USD");
+                offer.put("formattedPrice", "$1.99");
+                json.put("oneTimePurchaseOfferDetails", offer);
+            }
+
+            // The JSON constructor of ProductDetails is not public.
+            Constructor<ProductDetails> constructor = ProductDetails.class.getDeclaredConstructor(String.class);
+            constructor.setAccessible(true);
+            return constructor.newInstance(json.toString());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Purchase createPurchase(String productType, int index) {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("orderId", "GPA.0000-" + productType + "-" + index);
+            json.put("packageName", "com.billingsdk.test");
+            json.put("productId", productType + "_" + index);
+            json.put("purchaseTime", 1700000000000L + index);
+            json.put("purchaseState", 0);
+            json.put("purchaseToken", "fake." + productType + "." + index);
+            json.put("quantity", 1);
+            json.put("acknowledged", true);
+            json.put("autoRenewing", BillingClient.ProductType.SUBS.equals(productType));
+            return new Purchase(json.toString(), "signature." + index);
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
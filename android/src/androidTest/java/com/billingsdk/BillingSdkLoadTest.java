@@ -0,0 +1,195 @@
+package com.billingsdk;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.android.billingclient.api.BillingClient;
+import com.facebook.react.bridge.Callback;
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.PromiseImpl;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.soloader.SoLoader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives hundreds of concurrent product details queries, purchase queries, acknowledgements and
+ * consumptions through BillingSdk on BillingSdkFakeClient, and logs the throughput and latency
+ * percentiles of the promises under the BillingSdkLoadTest tag. Run with `./gradlew connectedAndroidTest`.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BillingSdkLoadTest {
+    private static final String TAG = "BillingSdkLoadTest";
+    private static final int REQUESTS = 500;
+    private static final int CALLER_THREADS = 16;
+    private static final int PRODUCT_IDS = 200;
+    private static final long TIMEOUT = 2 * 60 * 1000;
+
+    private static class Result {
+        private final String operation;
+        private final long latencyNanos;
+        private final String outcome;
+
+        private Result(String operation, long latencyNanos, String outcome) {
+            this.operation = operation;
+            this.latencyNanos = latencyNanos;
+            this.outcome = outcome;
+        }
+    }
+
+    private BillingSdkFakeClient client;
+    private BillingSdk billingSdk;
+    private ExecutorService callers;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        SoLoader.init(context, false);
+
+        ReactApplicationContext reactContext = new ReactApplicationContext(context);
+        client = new BillingSdkFakeClient();
+        billingSdk = new BillingSdk(reactContext, new BillingSdkEventEmitter(reactContext), client.factory());
+        callers = Executors.newFixedThreadPool(CALLER_THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        callers.shutdownNow();
+        billingSdk.shutdown();
+        client.shutdown();
+    }
+
+    @Test
+    public void steadyService() throws InterruptedException {
+        client.setLatency(20, 200);
+        client.setPurchaseCount(100);
+        run("steady");
+    }
+
+    @Test
+    public void degradedService() throws InterruptedException {
+        client.setLatency(50, 500);
+        client.setErrorRate(0.05, BillingClient.BillingResponseCode.SERVICE_UNAVAILABLE);
+        client.setDisconnectRate(0.01);
+        client.setPurchaseCount(1000);
+        run("degraded");
+    }
+
+    private void run(String scenario) throws InterruptedException {
+        final CountDownLatch settled = new CountDownLatch(REQUESTS);
+        final ConcurrentLinkedQueue<Result> results = new ConcurrentLinkedQueue<>();
+        long startedAt = System.nanoTime();
+
+        for(int i = 0; i < REQUESTS; i++){
+            final int index = i;
+            callers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    send(index, results, settled);
+                }
+            });
+        }
+
+        assertTrue("Promises left unsettled after " + TIMEOUT + "ms.", settled.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        report(scenario, new ArrayList<>(results), System.nanoTime() - startedAt);
+    }
+
+    /**
+     * Sends the index-th request. 40% are product details queries of 1 to 20 products, 30% purchase
+     * queries, 20% acknowledgements and 10% consumptions.
+     */
+    private void send(int index, ConcurrentLinkedQueue<Result> results, CountDownLatch settled) {
+        int kind = index % 10;
+        String productType = index % 2 == 0 ? BillingClient.ProductType.SUBS : BillingClient.ProductType.INAPP;
+
+        if(kind < 4){
+            ArrayList<String> productIds = new ArrayList<>();
+            for(int i = 0; i <= index % 20; i++) productIds.add("product_" + (index * 7 + i) % PRODUCT_IDS);
+            billingSdk.queryProductDetails(productIds, productType, BillingSdkProjection.ALL, createPromise("queryProductDetails", results, settled));
+        } else if(kind < 7){
+            billingSdk.queryPurchases(productType, BillingSdkProjection.ALL, createPromise("queryPurchases", results, settled));
+        } else if(kind < 9){
+            billingSdk.acknowledgePurchase("fake.inapp." + index, createPromise("acknowledgePurchase", results, settled));
+        } else {
+            billingSdk.consume("fake.inapp." + index, createPromise("consume", results, settled));
+        }
+    }
+
+    private static Promise createPromise(final String operation, final ConcurrentLinkedQueue<Result> results, final CountDownLatch settled) {
+        final long startedAt = System.nanoTime();
+
+        return new PromiseImpl(new Callback() {
+            @Override
+            public void invoke(Object... args) {
+                results.add(new Result(operation, System.nanoTime() - startedAt, "resolved"));
+                settled.countDown();
+            }
+        }, new Callback() {
+            @Override
+            public void invoke(Object... args) {
+                results.add(new Result(operation, System.nanoTime() - startedAt, "rejected"));
+                settled.countDown();
+            }
+        });
+    }
+
+    private void report(String scenario, List<Result> results, long elapsedNanos) {
+        Map<String, List<Long>> latenciesByOperation = new TreeMap<>();
+        Map<String, Integer> outcomes = new TreeMap<>();
+        List<Long> latencies = new ArrayList<>();
+
+        for(Result result: results){
+            List<Long> operationLatencies = latenciesByOperation.get(result.operation);
+            if(operationLatencies == null){
+                operationLatencies = new ArrayList<>();
+                latenciesByOperation.put(result.operation, operationLatencies);
+            }
+            operationLatencies.add(result.latencyNanos);
+            latencies.add(result.latencyNanos);
+
+            Integer count = outcomes.get(result.outcome);
+            outcomes.put(result.outcome, count == null ? 1 : count + 1);
+        }
+
+        double seconds = elapsedNanos / 1e9;
+        Log.i(TAG, String.format("[%s] %d requests in %.2fs, %.1f requests/s, %s, %d Play calls, %d disconnects",
+                scenario, results.size(), seconds, results.size() / seconds, outcomes, client.getCalls(), client.getDisconnects()));
+        Log.i(TAG, "[" + scenario + "] all " + formatPercentiles(latencies));
+        for(Map.Entry<String, List<Long>> entry: latenciesByOperation.entrySet())
+            Log.i(TAG, "[" + scenario + "] " + entry.getKey() + " " + formatPercentiles(entry.getValue()));
+    }
+
+    private static String formatPercentiles(List<Long> latencies) {
+        Collections.sort(latencies);
+        StringBuilder builder = new StringBuilder();
+
+        for(double percentile: Arrays.asList(0.5, 0.95, 0.99, 1.0)){
+            int index = (int) Math.ceil(percentile * latencies.size()) - 1;
+            long latency = latencies.get(Math.max(0, index));
+            if(builder.length() > 0) builder.append(", ");
+            builder.append(percentile == 1.0 ? "max" : "p" + Math.round(percentile * 100)).append(' ').append(latency / 1000000).append("ms");
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,150 @@
+package com.billingsdk;
+
+import com.android.billingclient.api.BillingClient;
+import com.android.billingclient.api.ProductDetails;
+import com.android.billingclient.api.Purchase;
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic catalogs for the benchmarks. ProductDetails and Purchase are parsed from the JSON Google
+ * Play returns, so the converters read them exactly as they read real ones. Products at even indexes
+ * are subscriptions with a trial offer, an introductory offer and a base plan, the others are one-time products.
+ */
+public class BillingSdkBenchmarkFixtures {
+    /**
+     * Writes payloads to Java maps and arrays instead of native ones, which need the React Native
+     * native libraries loaded.
+     */
+    public static final BillingSdkConverter.PayloadWriter IN_MEMORY_WRITER = new BillingSdkConverter.PayloadWriter() {
+        @Override
+        public WritableMap createMap() {
+            return new JavaOnlyMap();
+        }
+
+        @Override
+        public WritableArray createArray() {
+            return new JavaOnlyArray();
+        }
+    };
+
+    public static List<ProductDetails> createProductDetailsList(int size) throws Exception {
+        // The JSON constructor of ProductDetails is not public.
+        Constructor<ProductDetails> constructor = ProductDetails.class.getDeclaredConstructor(String.class);
+        constructor.setAccessible(true);
+
+        List<ProductDetails> productDetailsList = new ArrayList<>(size);
+        for(int i = 0; i < size; i++){
+            JSONObject json = i % 2 == 0 ? createSubscriptionJSON(i) : createInAppProductJSON(i);
+            productDetailsList.add(constructor.newInstance(json.toString()));
+        }
+        return productDetailsList;
+    }
+
+    public static List<Purchase> createPurchaseList(int size) throws JSONException {
+        List<Purchase> purchaseList = new ArrayList<>(size);
+        for(int i = 0; i < size; i++){
+            JSONObject json = new JSONObject();
+            json.put("orderId", "GPA.3300-0000-0000-" + String.format("%05d", i));
+            json.put("packageName", "com.billingsdk.example");
+            json.put("productId", "product_" + i);
+            json.put("purchaseTime", 1700000000000L + i * 60000L);
+            json.put("purchaseState", 0);
+            json.put("purchaseToken", createToken("purchase", i));
+            json.put("quantity", 1);
+            json.put("acknowledged", i % 3 != 0);
+            json.put("autoRenewing", i % 2 == 0);
+            json.put("obfuscatedAccountId", "account_" + i);
+            json.put("obfuscatedProfileId", "profile_" + i);
+            purchaseList.add(new Purchase(json.toString(), createToken("signature", i)));
+        }
+        return purchaseList;
+    }
+
+    public static List<ProductDetails.PricingPhase> getPricingPhases(List<ProductDetails> productDetailsList) {
+        List<ProductDetails.PricingPhase> pricingPhases = new ArrayList<>();
+        for(ProductDetails productDetails: productDetailsList){
+            List<ProductDetails.SubscriptionOfferDetails> offers = productDetails.getSubscriptionOfferDetails();
+            if(offers == null) continue;
+            for(ProductDetails.SubscriptionOfferDetails offer: offers) pricingPhases.addAll(offer.getPricingPhases().getPricingPhaseList());
+        }
+        return pricingPhases;
+    }
+
+    private static JSONObject createSubscriptionJSON(int index) throws JSONException {
+        JSONArray offers = new JSONArray();
+        offers.put(createOfferJSON(index, "trial", createPricingPhaseJSON(0, "Free", "P1W", 2, 1), createPricingPhaseJSON(9990000, "$9.99", "P1M", 1, 0)));
+        offers.put(createOfferJSON(index, "intro", createPricingPhaseJSON(4990000, "$4.99", "P1M", 2, 3), createPricingPhaseJSON(9990000, "$9.99", "P1M", 1, 0)));
+        offers.put(createOfferJSON(index, null, createPricingPhaseJSON(9990000, "$9.99", "P1M", 1, 0)));
+
+        JSONObject json = createProductJSON(index, BillingClient.ProductType.SUBS);
+        json.put("subscriptionOfferDetails", offers);
+        return json;
+    }
+
+    private static JSONObject createInAppProductJSON(int index) throws JSONException {
+        JSONObject offer = new JSONObject();
+        offer.put("priceAmountMicros", 1990000 + index * 10000L);
+        offer.put("priceCurrencyCode", "USD");
+        offer.put("formattedPrice", "$" + (199 + index) / 100 + "." + String.format("%02d", (199 + index) % 100));
+
+        JSONObject json = createProductJSON(index, BillingClient.ProductType.INAPP);
+        json.put("oneTimePurchaseOfferDetails", offer);
+        return json;
+    }
+
+    private static JSONObject createProductJSON(int index, String productType) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("productId", "product_" + index);
+        json.put("type", productType);
+        json.put("title", "Product " + index + " (Billing SDK Example)");
+        json.put("name", "Product " + index);
+        json.put("description", "Synthetic product " + index + " used to benchmark the payload converters.");
+        json.put("skuDetailsToken", createToken("details", index));
+        return json;
+    }
+
+    private static JSONObject createOfferJSON(int index, String offerId, JSONObject... pricingPhases) throws JSONException {
+        JSONArray pricingPhasesJson = new JSONArray();
+        for(JSONObject pricingPhase: pricingPhases) pricingPhasesJson.put(pricingPhase);
+
+        JSONArray offerTags = new JSONArray();
+        if(offerId != null) offerTags.put(offerId);
+
+        JSONObject json = new JSONObject();
+        json.put("basePlanId", "monthly");
+        if(offerId != null) json.put("offerId", offerId);
+        json.put("offerIdToken", createToken(offerId == null ? "monthly" : offerId, index));
+        json.put("offerTags", offerTags);
+        json.put("pricingPhases", pricingPhasesJson);
+        return json;
+    }
+
+    private static JSONObject createPricingPhaseJSON(long priceAmountMicros, String formattedPrice, String billingPeriod, int recurrenceMode, int billingCycleCount) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("priceAmountMicros", priceAmountMicros);
+        json.put("priceCurrencyCode", "USD");
+        json.put("formattedPrice", formattedPrice);
+        json.put("billingPeriod", billingPeriod);
+        json.put("recurrenceMode", recurrenceMode);
+        json.put("billingCycleCount", billingCycleCount);
+        return json;
+    }
+
+    // Tokens are as long as the ones returned by Google Play.
+    private static String createToken(String prefix, int index) {
+        StringBuilder token = new StringBuilder(prefix).append('.').append(index).append('.');
+        while(token.length() < 160) token.append(Integer.toHexString(token.length() * 31 + index));
+        return token.toString();
+    }
+}
@@ -0,0 +1,79 @@
+package com.billingsdk;
+
+import com.android.billingclient.api.ProductDetails;
+import com.android.billingclient.api.Purchase;
+import com.facebook.react.bridge.ReadableArray;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of converting a whole catalog of `size` products or purchases to a JS payload. Run with the
+ * gc profiler (the default of `./gradlew benchmark`) to get the bytes allocated per operation next to
+ * the time per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BillingSdkConverterBenchmark {
+    @Param({"1", "10", "100", "1000"})
+    public int size;
+
+    private List<ProductDetails> productDetailsList;
+    private List<Purchase> purchaseList;
+    private List<ProductDetails.PricingPhase> pricingPhaseList;
+    private BillingSdkProjection paywallProjection;
+
+    @Setup
+    public void setup() throws Exception {
+        BillingSdkConverter.setPayloadWriter(BillingSdkBenchmarkFixtures.IN_MEMORY_WRITER);
+
+        productDetailsList = BillingSdkBenchmarkFixtures.createProductDetailsList(size);
+        purchaseList = BillingSdkBenchmarkFixtures.createPurchaseList(size);
+        pricingPhaseList = BillingSdkBenchmarkFixtures.getPricingPhases(productDetailsList);
+        // Fields a paywall typically requests.
+        paywallProjection = BillingSdkProjection.fromFields(Arrays.asList(
+                "productId",
+                "title",
+                "oneTimePurchaseOfferDetails.formattedPrice",
+                "subscriptionOfferDetails.offerToken",
+                "subscriptionOfferDetails.pricingPhases.formattedPrice"));
+    }
+
+    @Benchmark
+    public ReadableArray convertProductDetailsList() {
+        return BillingSdkConverter.convertProductDetailsListToArray(productDetailsList);
+    }
+
+    @Benchmark
+    public ReadableArray convertProductDetailsListProjected() {
+        return BillingSdkConverter.convertProductDetailsListToArray(productDetailsList, paywallProjection);
+    }
+
+    @Benchmark
+    public ReadableArray convertPurchaseList() {
+        return BillingSdkConverter.convertPurchaseListToArray(purchaseList);
+    }
+
+    // Every subscription has 5 pricing phases, so this converts 2.5 phases per product on average.
+    @Benchmark
+    public ReadableArray convertPricingPhaseList() {
+        return BillingSdkConverter.convertPricingPhaseListToArray(pricingPhaseList, BillingSdkProjection.ALL);
+    }
+}
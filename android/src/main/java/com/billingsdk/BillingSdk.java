@@ -5,112 +5,493 @@ import android.app.Activity;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import com.android.billingclient.api.AcknowledgePurchaseParams;
 import com.android.billingclient.api.AcknowledgePurchaseResponseListener;
 import com.android.billingclient.api.BillingClient;
-import com.android.billingclient.api.BillingClientStateListener;
 import com.android.billingclient.api.BillingFlowParams;
 import com.android.billingclient.api.BillingResult;
-import com.android.billingclient.api.ConsumeParams;
 import com.android.billingclient.api.ConsumeResponseListener;
 import com.android.billingclient.api.ProductDetails;
-import com.android.billingclient.api.ProductDetailsResponseListener;
 import com.android.billingclient.api.Purchase;
 import com.android.billingclient.api.PurchaseHistoryRecord;
 import com.android.billingclient.api.PurchaseHistoryResponseListener;
 import com.android.billingclient.api.PurchasesResponseListener;
 import com.android.billingclient.api.PurchasesUpdatedListener;
-import com.android.billingclient.api.QueryProductDetailsParams;
 import com.android.billingclient.api.QueryPurchaseHistoryParams;
-import com.android.billingclient.api.QueryPurchasesParams;
-import com.facebook.common.internal.ImmutableList;
+import com.facebook.react.bridge.LifecycleEventListener;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeArray;
 import com.facebook.react.bridge.WritableNativeMap;
-import com.android.billingclient.api.PendingPurchasesParams;
-import com.android.billingclient.api.QueryProductDetailsResult;
+
+import org.json.JSONException;
+import org.json.JSONObject;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BillingSdk {
-    private final BillingClient billingClient;
-    private final HashMap<String, ProductDetails> productDetailsList;
-    private final ReactApplicationContext context;
+    private final BillingSdkClient billingClient;
+    private final BillingSdkConnectionManager connectionManager;
+    private final BillingSdkProductDetailsStore productDetailsStore;
+    private volatile ReactApplicationContext context;
     private final BillingSdkEventEmitter eventEmitter;
+    private final BillingSdkProductCache productCache;
+    private final BillingSdkProductDetailsBatcher productDetailsBatcher;
+    private final BillingSdkPayloadMemo payloadMemo;
+    private final BillingSdkPurchaseVerifier purchaseVerifier;
+    private final BillingSdkPurchaseStateStore purchaseStateStore;
+    private final BillingSdkEntitlementIndex entitlementIndex;
+    private final BillingSdkPurchaseLedger purchaseLedger;
+    private final BillingSdkPendingOperationQueue pendingOperations;
+    private final BillingSdkPrefetchResults prefetchResults;
+    private final BillingSdkMetrics metrics;
+    private final BillingSdkCallbackExecutor callbackExecutor;
+    private final BillingSdkResultCursors resultCursors = new BillingSdkResultCursors();
+    // Timers of the batcher, the pending operation queue, the retry policy and the purchase flows.
+    private final ScheduledExecutorService scheduler = newScheduler("BillingSdkScheduler");
+    private final BillingSdkRetryPolicy retryPolicy = new BillingSdkRetryPolicy(scheduler);
+    private final BillingSdkPurchaseFlows purchaseFlows = new BillingSdkPurchaseFlows(scheduler);
+    private final AtomicBoolean prefetched = new AtomicBoolean(false);
+    private final AtomicInteger purchasesChangedSequence = new AtomicInteger();
 
     public BillingSdk(ReactApplicationContext context, BillingSdkEventEmitter eventEmitter) {
+        this(context, eventEmitter, BillingSdkPlayClient.factory(context.getApplicationContext()));
+    }
+
+    /**
+     * Creates the SDK on the client made by clientFactory instead of the Play Billing Library, e.g. a
+     * fake client for load tests.
+     */
+    public BillingSdk(ReactApplicationContext context, BillingSdkEventEmitter eventEmitter, BillingSdkClient.Factory clientFactory) {
         this.context = context;
         this.eventEmitter = eventEmitter;
-        this.productDetailsList = new HashMap<>();
-        this.billingClient = BillingClient.newBuilder(context)
-                .setListener(this.purchasesUpdatedListener)
-                .enablePendingPurchases(PendingPurchasesParams.newBuilder().enableOneTimeProducts().build())
-                .enableAutoServiceReconnection()
-                .build();
+        // Purchases made and disconnections happening before JS subscribes are replayed to the first listener.
+        this.eventEmitter.setSticky(BillingSdkConstants.PURCHASE_UPDATED);
+        this.eventEmitter.setSticky(BillingSdkConstants.BILLING_SERVICE_DISCONNECTED);
+        this.eventEmitter.setSticky(BillingSdkConstants.PURCHASES_CHANGED);
+        this.productDetailsStore = new BillingSdkProductDetailsStore();
+        this.productCache = new BillingSdkProductCache(context);
+        this.metrics = new BillingSdkMetrics();
+        this.callbackExecutor = new BillingSdkCallbackExecutor();
+        this.purchaseVerifier = new BillingSdkPurchaseVerifier();
+        this.payloadMemo = new BillingSdkPayloadMemo(this.metrics, this.purchaseVerifier);
+        this.prefetchResults = new BillingSdkPrefetchResults();
+        this.entitlementIndex = new BillingSdkEntitlementIndex(context, this.purchaseVerifier);
+        this.purchaseLedger = new BillingSdkPurchaseLedger(context);
+        this.purchaseStateStore = new BillingSdkPurchaseStateStore(new BillingSdkPurchaseStateStore.ProductTypeResolver() {
+            @Override
+            public @Nullable String getProductType(String productId) {
+                return productDetailsStore.getProductType(productId);
+            }
+        });
+        this.billingClient = clientFactory.create(this.purchasesUpdatedListener);
+        this.connectionManager = new BillingSdkConnectionManager(this.billingClient, this.metrics, new BillingSdkConnectionManager.Listener() {
+            @Override
+            public void onConnected() {
+                eventEmitter.discardUndelivered(BillingSdkConstants.BILLING_SERVICE_DISCONNECTED);
+                pendingOperations.retry();
+            }
+
+            @Override
+            public void onDisconnected() {
+                // Reconnection storms report a single disconnection per frame.
+                eventEmitter.sendCoalescedEvent(BillingSdkConstants.BILLING_SERVICE_DISCONNECTED, BillingSdkConstants.BILLING_SERVICE_DISCONNECTED, new BillingSdkEventEmitter.PayloadFactory() {
+                    @Override
+                    public @Nullable WritableMap create() {
+                        return null;
+                    }
+                });
+            }
+        });
+        this.productDetailsBatcher = new BillingSdkProductDetailsBatcher(this.connectionManager, this.billingClient, this.metrics, this.retryPolicy, this.callbackExecutor, this.scheduler);
+        this.pendingOperations = new BillingSdkPendingOperationQueue(context, this.scheduler, new BillingSdkPendingOperationQueue.Executor() {
+            @Override
+            public void execute(String type, String purchaseToken, BillingSdkTokenOperationRunner.Callback callback) {
+                if(BillingSdkPendingOperationQueue.TYPE_CONSUME.equals(type)) consumeRunner.run(purchaseToken, callback);
+                else acknowledgeRunner.run(purchaseToken, callback);
+            }
+        }, new BillingSdkPendingOperationQueue.Listener() {
+            @Override
+            public void onOperationResult(final String type, final String purchaseToken, final BillingResult billingResult, final int attempts, final boolean willRetry) {
+                eventEmitter.sendEvent(BillingSdkConstants.PENDING_OPERATION_RESULT, new BillingSdkEventEmitter.PayloadFactory() {
+                    @Override
+                    public WritableMap create() {
+                        WritableMap json = new WritableNativeMap();
+                        json.putString("type", type);
+                        json.putString("purchaseToken", purchaseToken);
+                        json.putBoolean("ok", billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK);
+                        json.putString("responseCode", String.valueOf(billingResult.getResponseCode()));
+                        json.putString("debugMessage", billingResult.getDebugMessage());
+                        json.putInt("attempts", attempts);
+                        json.putBoolean("willRetry", willRetry);
+                        return json;
+                    }
+                });
+            }
+        });
+        context.addLifecycleEventListener(this.lifecycleEventListener);
+    }
+
+    private final LifecycleEventListener lifecycleEventListener = new LifecycleEventListener() {
+        @Override
+        public void onHostResume() {
+            pendingOperations.retry();
+        }
+
+        @Override
+        public void onHostPause() {}
+
+        @Override
+        public void onHostDestroy() {}
+    };
+
+    public BillingSdkEventEmitter getEventEmitter() {
+        return eventEmitter;
+    }
+
+    /**
+     * Moves the SDK to a new React context, e.g. after a reload. The connection, caches and stores are
+     * kept, events not delivered to the previous JS runtime are replayed to the new one.
+     */
+    public void attach(ReactApplicationContext context) {
+        ReactApplicationContext previousContext = this.context;
+        if(previousContext == context) return;
+
+        if(previousContext != null) previousContext.removeLifecycleEventListener(lifecycleEventListener);
+        this.context = context;
+        eventEmitter.setContext(context);
+        context.addLifecycleEventListener(lifecycleEventListener);
+    }
+
+    /**
+     * Releases the React context when it is destroyed. Events are held until a new context is attached.
+     */
+    public void detach(ReactApplicationContext context) {
+        if(this.context != context) return;
+
+        context.removeLifecycleEventListener(lifecycleEventListener);
+        eventEmitter.setContext(null);
+    }
+
+    /**
+     * Single thread scheduler that drops the tasks scheduled after its shutdown, so that Google Play
+     * callbacks arriving after the SDK is shut down do not throw.
+     */
+    static ScheduledExecutorService newScheduler(final String name) {
+        return new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, name);
+            }
+        }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * Ends the connection to Google Play for good and stops the SDK's threads, once no React context
+     * uses the SDK anymore. Pending ledger writes and queued callbacks still complete.
+     */
+    public void shutdown() {
+        ReactApplicationContext currentContext = context;
+        if(currentContext != null) currentContext.removeLifecycleEventListener(lifecycleEventListener);
+
+        connectionManager.endConnection();
+        scheduler.shutdownNow();
+        eventEmitter.close();
+        purchaseLedger.close();
+        callbackExecutor.close();
     }
 
     private final PurchasesUpdatedListener purchasesUpdatedListener = new PurchasesUpdatedListener() {
         @Override
-        public void onPurchasesUpdated(@NonNull BillingResult billingResult, @Nullable List<Purchase> purchases) {
+        public void onPurchasesUpdated(@NonNull final BillingResult billingResult, @Nullable final List<Purchase> purchases) {
+            callbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    purchaseFlows.onPurchasesUpdated(billingResult, purchases);
+                    sendPurchaseUpdated(billingResult, purchases);
+                }
+            });
+        }
+    };
+
+    private static class PurchaseUpdate {
+        private String debugMessage;
+        private boolean hasPurchases = false;
+        private final Map<String, Purchase> purchases = new LinkedHashMap<>();
+    }
+
+    // Purchase updates not emitted yet, by response code. Updates received within the same frame are
+    // merged into one event, keeping the latest state of each purchase.
+    private final Map<Integer, PurchaseUpdate> purchaseUpdates = new HashMap<>();
+
+    private void sendPurchaseUpdated(BillingResult billingResult, @Nullable List<Purchase> purchases){
+        final int responseCode = billingResult.getResponseCode();
+        boolean hasPurchases = responseCode == BillingClient.BillingResponseCode.OK && purchases != null;
+
+        synchronized (purchaseUpdates) {
+            PurchaseUpdate update = purchaseUpdates.get(responseCode);
+            if(update == null){
+                update = new PurchaseUpdate();
+                purchaseUpdates.put(responseCode, update);
+            }
+
+            update.debugMessage = billingResult.getDebugMessage();
+            if(hasPurchases){
+                update.hasPurchases = true;
+                for(Purchase purchase: purchases) update.purchases.put(purchase.getPurchaseToken(), purchase);
+            }
+        }
+
+        eventEmitter.sendCoalescedEvent(BillingSdkConstants.PURCHASE_UPDATED, BillingSdkConstants.PURCHASE_UPDATED + ":" + responseCode, new BillingSdkEventEmitter.PayloadFactory() {
+            @Override
+            public @Nullable WritableMap create() {
+                PurchaseUpdate update;
+                synchronized (purchaseUpdates) {
+                    update = purchaseUpdates.remove(responseCode);
+                }
+                if(update == null) return null;
+
+                WritableMap json = new WritableNativeMap();
+                json.putString("responseCode", String.valueOf(responseCode));
+                json.putString("debugMessage", update.debugMessage);
+
+                if(update.hasPurchases)
+                    json.putArray("purchases", payloadMemo.convertPurchaseList(new ArrayList<>(update.purchases.values()), BillingSdkProjection.ALL));
+                else
+                    json.putNull("purchases");
+
+                return json;
+            }
+        });
+
+        if(hasPurchases)
+            sendPurchasesChanged(purchaseStateStore.update(purchases));
+    }
+
+    private WritableMap convertPurchaseSnapshot(BillingSdkPurchaseStateStore.Snapshot snapshot){
+        WritableMap json = payloadMemo.convertPurchase(snapshot.purchase, BillingSdkProjection.ALL);
+        // Acknowledgements made through the SDK are not reflected by the Purchase object it was converted from.
+        json.putBoolean("isAcknowledged", snapshot.isAcknowledged);
+        return json;
+    }
+
+    /**
+     * Applies the complete list of active purchases of a product type to the purchase state store, to
+     * the entitlement index and to the purchase ledger.
+     */
+    private BillingSdkPurchaseStateStore.Diff replacePurchases(String productType, List<Purchase> purchaseList){
+        entitlementIndex.replace(productType, purchaseList);
+        purchaseLedger.replace(productType, purchaseList);
+        return purchaseStateStore.replace(productType, purchaseList);
+    }
+
+    /**
+     * Emits PURCHASES_CHANGED with the purchases added, changed and removed since they were last observed.
+     */
+    private void sendPurchasesChanged(final BillingSdkPurchaseStateStore.Diff diff){
+        if(diff.isEmpty()) return;
+        entitlementIndex.apply(diff);
+        purchaseLedger.apply(diff);
+
+        // Each diff is held under its own key, so that diffs sent before JS listens are all replayed.
+        String key = BillingSdkConstants.PURCHASES_CHANGED + ":" + purchasesChangedSequence.incrementAndGet();
+        eventEmitter.sendEvent(BillingSdkConstants.PURCHASES_CHANGED, key, new BillingSdkEventEmitter.PayloadFactory() {
+            @Override
+            public WritableMap create() {
+                return convertPurchasesDiff(diff);
+            }
+        });
+    }
+
+    private WritableMap convertPurchasesDiff(BillingSdkPurchaseStateStore.Diff diff){
+        WritableArray added = new WritableNativeArray();
+        for(BillingSdkPurchaseStateStore.Snapshot snapshot: diff.added) added.pushMap(convertPurchaseSnapshot(snapshot));
+
+        WritableArray changed = new WritableNativeArray();
+        for(BillingSdkPurchaseStateStore.Change change: diff.changed){
+            WritableMap json = new WritableNativeMap();
+            json.putMap("purchase", convertPurchaseSnapshot(change.current));
+            json.putInt("previousPurchaseState", change.previous.purchaseState);
+            json.putBoolean("previousIsAcknowledged", change.previous.isAcknowledged);
+            json.putBoolean("previousIsAutoRenewing", change.previous.isAutoRenewing);
+            json.putInt("previousQuantity", change.previous.quantity);
+            changed.pushMap(json);
+        }
+
+        WritableArray removed = new WritableNativeArray();
+        for(BillingSdkPurchaseStateStore.Snapshot snapshot: diff.removed){
             WritableMap json = new WritableNativeMap();
+            json.putString("purchaseToken", snapshot.purchase.getPurchaseToken());
+            json.putString("productId", snapshot.getProductId());
+            if(snapshot.productType != null) json.putString("productType", snapshot.productType);
+            else json.putNull("productType");
+            removed.pushMap(json);
+        }
 
-            int responseCode = billingResult.getResponseCode();
-            json.putString("responseCode", String.valueOf(responseCode));
-            json.putString("debugMessage", billingResult.getDebugMessage());
+        WritableMap json = new WritableNativeMap();
+        json.putArray("added", added);
+        json.putArray("changed", changed);
+        json.putArray("removed", removed);
+        return json;
+    }
 
-            if(responseCode == BillingClient.BillingResponseCode.OK && purchases != null)
-                json.putArray("purchases", BillingSdkConverter.convertPurchaseListToArray(purchases));
-            else
-                json.putNull("purchases");
+    private final BillingSdkTokenOperationRunner acknowledgeRunner = new BillingSdkTokenOperationRunner(new BillingSdkTokenOperationRunner.Operation() {
+        @Override
+        public void execute(String purchaseToken, BillingSdkTokenOperationRunner.Callback callback) {
+            pendingOperations.add(BillingSdkPendingOperationQueue.TYPE_ACKNOWLEDGE, purchaseToken);
+            connectionManager.execute(new BillingSdkConnectionManager.Operation() {
+                @Override
+                public void run() {
+                    final long startedAt = BillingSdkMetrics.start();
+                    billingClient.acknowledgePurchase(purchaseToken, new AcknowledgePurchaseResponseListener() {
+                        @Override
+                        public void onAcknowledgePurchaseResponse(@NonNull final BillingResult billingResult) {
+                            metrics.record(BillingSdkMetrics.ACKNOWLEDGE_PURCHASE, startedAt, billingResult);
+                            callbackExecutor.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if(billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK)
+                                        sendPurchasesChanged(purchaseStateStore.acknowledge(purchaseToken));
+                                    complete(billingResult);
+                                }
+                            });
+                        }
+                    });
+                }
+
+                @Override
+                public void onError(BillingResult billingResult) {
+                    complete(billingResult);
+                }
 
-            eventEmitter.sendEvent(BillingSdkConstants.PURCHASE_UPDATED, json);
+                private void complete(BillingResult billingResult) {
+                    pendingOperations.complete(BillingSdkPendingOperationQueue.TYPE_ACKNOWLEDGE, purchaseToken, billingResult);
+                    callback.onResult(billingResult);
+                }
+            });
         }
-    };
+    });
 
-    public void acknowledgePurchase(String purchaseToken, Promise promise){
-        AcknowledgePurchaseParams.Builder builder = AcknowledgePurchaseParams.newBuilder();
-        builder.setPurchaseToken(purchaseToken);
-        AcknowledgePurchaseParams acknowledgePurchaseParams = builder.build();
-        billingClient.acknowledgePurchase(acknowledgePurchaseParams, new AcknowledgePurchaseResponseListener() {
+    private final BillingSdkTokenOperationRunner consumeRunner = new BillingSdkTokenOperationRunner(new BillingSdkTokenOperationRunner.Operation() {
+        @Override
+        public void execute(String purchaseToken, BillingSdkTokenOperationRunner.Callback callback) {
+            pendingOperations.add(BillingSdkPendingOperationQueue.TYPE_CONSUME, purchaseToken);
+            connectionManager.execute(new BillingSdkConnectionManager.Operation() {
+                @Override
+                public void run() {
+                    final long startedAt = BillingSdkMetrics.start();
+                    billingClient.consume(purchaseToken, new ConsumeResponseListener() {
+                        @Override
+                        public void onConsumeResponse(@NonNull final BillingResult billingResult, @NonNull String consumedPurchaseToken) {
+                            metrics.record(BillingSdkMetrics.CONSUME, startedAt, billingResult);
+                            callbackExecutor.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if(billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK){
+                                        purchaseLedger.consume(purchaseToken);
+                                        sendPurchasesChanged(purchaseStateStore.consume(purchaseToken));
+                                    }
+                                    complete(billingResult);
+                                }
+                            });
+                        }
+                    });
+                }
+
+                @Override
+                public void onError(BillingResult billingResult) {
+                    complete(billingResult);
+                }
+
+                private void complete(BillingResult billingResult) {
+                    pendingOperations.complete(BillingSdkPendingOperationQueue.TYPE_CONSUME, purchaseToken, billingResult);
+                    callback.onResult(billingResult);
+                }
+            });
+        }
+    });
+
+    private static BillingSdkTokenOperationRunner.Callback resolveWithResult(Promise promise){
+        return new BillingSdkTokenOperationRunner.Callback() {
             @Override
-            public void onAcknowledgePurchaseResponse(@NonNull BillingResult billingResult) {
+            public void onResult(BillingResult billingResult) {
                 if(billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK){
                     promise.resolve(null);
                     return;
                 }
                 promise.reject(String.valueOf(billingResult.getResponseCode()), billingResult.getDebugMessage());
             }
-        });
+        };
     }
 
-    public void startConnection (Promise promise){
-        billingClient.startConnection(new BillingClientStateListener() {
+    private static BillingSdkTokenOperationRunner.BatchCallback resolveWithResults(Promise promise){
+        return new BillingSdkTokenOperationRunner.BatchCallback() {
             @Override
-            public void onBillingSetupFinished(BillingResult billingResult) {
-                if (billingResult.getResponseCode() ==  BillingClient.BillingResponseCode.OK) {
-                    // The BillingClient is ready. You can query purchases here.
-                    promise.resolve(null);
-                    return;
+            public void onResults(Map<String, BillingResult> results) {
+                WritableMap json = new WritableNativeMap();
+
+                for(Map.Entry<String, BillingResult> result: results.entrySet()){
+                    BillingResult billingResult = result.getValue();
+                    WritableMap tokenResult = new WritableNativeMap();
+                    tokenResult.putBoolean("ok", billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK);
+                    tokenResult.putString("responseCode", String.valueOf(billingResult.getResponseCode()));
+                    tokenResult.putString("debugMessage", billingResult.getDebugMessage());
+                    json.putMap(result.getKey(), tokenResult);
                 }
 
-                promise.reject(String.valueOf(billingResult.getResponseCode()), billingResult.getDebugMessage());
+                promise.resolve(json);
+            }
+        };
+    }
+
+    public void acknowledgePurchase(String purchaseToken, Promise promise){
+        acknowledgeRunner.run(purchaseToken, resolveWithResult(promise));
+    }
+
+    public void acknowledgePurchases(List<String> purchaseTokens, int concurrency, Promise promise){
+        acknowledgeRunner.runAll(purchaseTokens, concurrency, resolveWithResults(promise));
+    }
+
+    public void configurePendingOperations(boolean enabled, int maxAttempts, long baseDelay, long maxDelay, Promise promise){
+        pendingOperations.configure(enabled, maxAttempts, baseDelay, maxDelay);
+        if(enabled && billingClient.isReady()) pendingOperations.retry();
+        promise.resolve(null);
+    }
+
+    /**
+     * Resolves once the client is ready. Concurrent calls share the same connection attempt and
+     * resolve right away when the client is already connected.
+     */
+    public void startConnection (Promise promise){
+        connectionManager.execute(new BillingSdkConnectionManager.Operation() {
+            @Override
+            public void run() {
+                promise.resolve(null);
             }
 
             @Override
-            public void onBillingServiceDisconnected() {
-                // Try to restart the connection on the next request to
-                // Google Play by calling the startConnection() method.
-                eventEmitter.sendEvent(BillingSdkConstants.BILLING_SERVICE_DISCONNECTED, null);
+            public void onError(BillingResult billingResult) {
+                promise.reject(String.valueOf(billingResult.getResponseCode()), billingResult.getDebugMessage());
             }
         });
     }
 
     public void endConnection (Promise promise){
-        billingClient.endConnection();
+        connectionManager.endConnection();
         promise.resolve(null);
     }
 
@@ -118,44 +499,303 @@ public class BillingSdk {
         promise.resolve(billingClient.getConnectionState());
     }
 
-    public void queryProductDetails (ArrayList<String> productIds, String productType, Promise promise) {
-        List<QueryProductDetailsParams.Product> params = new ArrayList<>();
+    public int getConnectionStateSync(){
+        return billingClient.getConnectionState();
+    }
+
+    /**
+     * Whether the user is entitled to the product according to the entitlement index, without
+     * querying Google Play.
+     */
+    public boolean isEntitled(String productId){
+        return entitlementIndex.isEntitled(productId);
+    }
+
+    public WritableArray getActiveEntitlements(){
+        return entitlementIndex.getActiveEntitlements();
+    }
 
-        for (String productId: productIds) {
-            params.add( QueryProductDetailsParams.Product.newBuilder()
-                    .setProductId(productId)
-                    .setProductType(productType)
-                    .build());
+    /**
+     * Details of the requested products that are available without querying Google Play, from the
+     * product details store or, when some are missing there, from the product details cache.
+     * Products that are not available are omitted.
+     */
+    public WritableArray getCachedProductDetails(List<String> productIds, String productType){
+        List<ProductDetails> storedProductDetails = new ArrayList<>();
+        for(String productId: productIds){
+            ProductDetails productDetails = productDetailsStore.get(productId);
+            if(productDetails != null && productType.equals(productDetails.getProductType())) storedProductDetails.add(productDetails);
         }
 
-        QueryProductDetailsParams queryProductDetailsParams =
-                QueryProductDetailsParams.newBuilder()
-                        .setProductList(params)
-                        .build();
+        if(storedProductDetails.size() < productIds.size()){
+            WritableArray cachedProductDetails = productCache.getAll(productIds, productType, BillingSdkProjection.ALL);
+            if(cachedProductDetails != null) return cachedProductDetails;
+        }
 
-        billingClient.queryProductDetailsAsync(
-                queryProductDetailsParams,
-                new ProductDetailsResponseListener()  {
-                    @Override
-                    public void onProductDetailsResponse(BillingResult billingResult, QueryProductDetailsResult result) {
-                        List<ProductDetails> productDetails = result.getProductDetailsList();
-                        if(billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK){
-                          for(ProductDetails product: productDetails) productDetailsList.put(product.getProductId(), product);
-                          promise.resolve(BillingSdkConverter.convertProductDetailsListToArray(productDetails));
-                          return;
-                        }
-                        promise.reject(String.valueOf(billingResult.getResponseCode()), billingResult.getDebugMessage());
-                    }
+        WritableArray array = new WritableNativeArray();
+        for(ProductDetails productDetails: storedProductDetails) array.pushMap(payloadMemo.convertProductDetails(productDetails, BillingSdkProjection.ALL));
+        return array;
+    }
+
+    public void configureProductDetailsCache(boolean enabled, long ttl, long revalidateAfter, Promise promise){
+        productCache.configure(enabled, ttl, revalidateAfter);
+        promise.resolve(null);
+    }
+
+    public void clearProductDetailsCache(Promise promise){
+        productCache.clear();
+        promise.resolve(null);
+    }
+
+    public void queryProductDetails (ArrayList<String> productIds, String productType, BillingSdkProjection projection, Promise promise) {
+        List<ProductDetails> prefetchedProductDetails = prefetchResults.takeProductDetails(productIds, productType);
+        if(prefetchedProductDetails != null){
+            promise.resolve(payloadMemo.convertProductDetailsList(prefetchedProductDetails, projection));
+            return;
+        }
+
+        ReadableArray cachedProductDetails = productCache.getAll(productIds, productType, projection);
+        if(cachedProductDetails != null){
+            promise.resolve(cachedProductDetails);
+
+            // Stale while revalidate: refresh in the background when the cached prices are old
+            // or the ProductDetails needed by launchBillingFlow are not loaded in this process yet.
+            if(productCache.shouldRevalidate(productIds, productType) || !hasProductDetails(productIds)){
+                fetchProductDetails(productIds, productType, projection, null);
+            }
+            return;
+        }
+
+        fetchProductDetails(productIds, productType, projection, promise);
+    }
+
+    private boolean hasProductDetails(List<String> productIds){
+        for(String productId: productIds){
+            if(!productDetailsStore.contains(productId)) return false;
+        }
+        return true;
+    }
+
+    public void configureProductDetailsBatching(long window, Promise promise){
+        productDetailsBatcher.setWindow(window);
+        promise.resolve(null);
+    }
+
+    private void fetchProductDetails (List<String> productIds, String productType, BillingSdkProjection projection, @Nullable Promise promise) {
+        productDetailsBatcher.query(productIds, productType, new BillingSdkProductDetailsBatcher.Callback() {
+            @Override
+            public void onProductDetails(List<ProductDetails> productDetails) {
+                storeProductDetails(productDetails, productType);
+                if(promise != null) promise.resolve(payloadMemo.convertProductDetailsList(productDetails, projection));
+            }
+
+            @Override
+            public void onError(BillingResult billingResult) {
+                if(promise != null) promise.reject(String.valueOf(billingResult.getResponseCode()), billingResult.getDebugMessage());
+            }
+        });
+    }
+
+    /**
+     * Queries the products and resolves their first page along with a cursor to fetch the next ones.
+     * The other pages are only converted when fetched.
+     */
+    public void queryProductDetailsPaged (ArrayList<String> productIds, final String productType, final BillingSdkProjection projection, final int pageSize, final Promise promise) {
+        List<ProductDetails> prefetchedProductDetails = prefetchResults.takeProductDetails(productIds, productType);
+        if(prefetchedProductDetails != null){
+            promise.resolve(openProductDetailsCursor(prefetchedProductDetails, projection, pageSize));
+            return;
+        }
+
+        productDetailsBatcher.query(productIds, productType, new BillingSdkProductDetailsBatcher.Callback() {
+            @Override
+            public void onProductDetails(List<ProductDetails> productDetails) {
+                storeProductDetails(productDetails, productType);
+                promise.resolve(openProductDetailsCursor(productDetails, projection, pageSize));
+            }
+
+            @Override
+            public void onError(BillingResult billingResult) {
+                promise.reject(String.valueOf(billingResult.getResponseCode()), billingResult.getDebugMessage());
+            }
+        });
+    }
+
+    private WritableMap openProductDetailsCursor(List<ProductDetails> productDetails, final BillingSdkProjection projection, int pageSize){
+        return resultCursors.open(productDetails, pageSize, new BillingSdkResultCursors.PageConverter<ProductDetails>() {
+            @Override
+            public ReadableArray convert(List<ProductDetails> page) {
+                return payloadMemo.convertProductDetailsList(page, projection);
+            }
+        });
+    }
+
+    /**
+     * Queries the products from Google Play and resolves them only if they differ from the result
+     * identified by `etag`, which JS already holds.
+     */
+    public void queryProductDetailsIfChanged (ArrayList<String> productIds, String productType, @Nullable String etag, BillingSdkProjection projection, Promise promise) {
+        productDetailsBatcher.query(productIds, productType, new BillingSdkProductDetailsBatcher.Callback() {
+            @Override
+            public void onProductDetails(List<ProductDetails> productDetails) {
+                storeProductDetails(productDetails, productType);
+
+                String currentEtag = BillingSdkPayloadMemo.getProductDetailsListEtag(productDetails, projection);
+                boolean unchanged = currentEtag.equals(etag);
+                promise.resolve(createIfChangedResult(currentEtag, unchanged ? null : payloadMemo.convertProductDetailsList(productDetails, projection)));
+            }
+
+            @Override
+            public void onError(BillingResult billingResult) {
+                promise.reject(String.valueOf(billingResult.getResponseCode()), billingResult.getDebugMessage());
+            }
+        });
+    }
+
+    private static WritableMap createIfChangedResult(String etag, @Nullable ReadableArray items) {
+        WritableMap json = new WritableNativeMap();
+        json.putString("etag", etag);
+        json.putBoolean("unchanged", items == null);
+
+        if(items != null) json.putArray("items", items);
+        else json.putNull("items");
+
+        return json;
+    }
+
+    /**
+     * Keeps the queried products for launchBillingFlow, writes them to the product cache and emits
+     * PRODUCT_DETAILS_UPDATED for the products whose cached payload has changed.
+     */
+    private void storeProductDetails (List<ProductDetails> productDetails, final String productType) {
+        for(ProductDetails product: productDetails) productDetailsStore.put(product);
+        if(!productCache.isEnabled()) return;
+
+        final List<JSONObject> changedPayloads = new ArrayList<>();
+
+        for(ProductDetails product: productDetails){
+            // The cache always holds the full payload, only the requested fields are resolved to JS.
+            JSONObject changedPayload = productCache.put(product.getProductId(), productType, payloadMemo.convertProductDetails(product, BillingSdkProjection.ALL));
+            if(changedPayload != null) changedPayloads.add(changedPayload);
+        }
+
+        if(changedPayloads.isEmpty()) return;
+
+        eventEmitter.sendEvent(BillingSdkConstants.PRODUCT_DETAILS_UPDATED, new BillingSdkEventEmitter.PayloadFactory() {
+            @Override
+            public WritableMap create() {
+                WritableArray changedProducts = new WritableNativeArray();
+                for(JSONObject changedPayload: changedPayloads){
+                    try {
+                        changedProducts.pushMap(BillingSdkConverter.convertJSONObjectToMap(changedPayload));
+                    } catch (JSONException ignored) {}
                 }
-        );
+
+                WritableMap event = new WritableNativeMap();
+                event.putString("productType", productType);
+                event.putArray("products", changedProducts);
+                return event;
+            }
+        });
+    }
+
+    public void configureProductDetailsStore(int maxSize, long ttl, Promise promise){
+        productDetailsStore.configure(maxSize, ttl);
+        promise.resolve(null);
+    }
+
+    public void getProductDetailsStoreStats(Promise promise){
+        WritableMap json = new WritableNativeMap();
+        json.putInt("size", productDetailsStore.size());
+        json.putInt("maxSize", productDetailsStore.getMaxSize());
+        json.putDouble("hits", productDetailsStore.getHits());
+        json.putDouble("misses", productDetailsStore.getMisses());
+        json.putDouble("evictions", productDetailsStore.getEvictions());
+        promise.resolve(json);
+    }
+
+    /**
+     * Enables the verification of purchase signatures with the given Base64 public key, or disables
+     * it when the key is null. Converted purchases are then tagged with `verified`, and purchases that
+     * fail verification are left out of the entitlement index.
+     */
+    public void configurePurchaseVerification(@Nullable String publicKey, Promise promise){
+        try {
+            purchaseVerifier.setPublicKey(publicKey);
+        } catch (IllegalArgumentException e) {
+            promise.reject(String.valueOf(BillingClient.BillingResponseCode.DEVELOPER_ERROR), e.getMessage());
+            return;
+        }
+
+        promise.resolve(null);
     }
 
-    private @Nullable ProductDetails findProductDetailById (String productId){
-      if(!productDetailsList.containsKey(productId)){
-        return null;
-      }
+    public void getMetrics(Promise promise){
+        WritableMap json = metrics.toMap();
+        json.putMap("callbackExecutor", callbackExecutor.toMap());
+        json.putMap("events", eventEmitter.toMap());
+        json.putInt("openCursors", resultCursors.size());
+        json.putMap("retryPolicy", retryPolicy.toMap());
+        promise.resolve(json);
+    }
 
-      return productDetailsList.get(productId);
+    public void configureRetryPolicy(boolean enabled, int maxAttempts, long baseDelay, long maxDelay, int failureThreshold, long openDuration, long hedgeDelay, Promise promise){
+        retryPolicy.configure(enabled, maxAttempts, baseDelay, maxDelay, failureThreshold, openDuration, hedgeDelay);
+        promise.resolve(null);
+    }
+
+    public void configureCallbackExecutor(int threads, int queueSize, Promise promise){
+        callbackExecutor.configure(threads, queueSize);
+        promise.resolve(null);
+    }
+
+    public void resetMetrics(Promise promise){
+        metrics.reset();
+        retryPolicy.resetCounters();
+        promise.resolve(null);
+    }
+
+    /**
+     * Resolves the offer of a subscription selected by the strategy (see BillingSdkOfferIndex), or null
+     * when no offer matches. The subscription is queried again if it was evicted from the store.
+     */
+    public void resolveOffer(final String productId, final String strategy, @Nullable final String tag, @Nullable final String basePlanId, final Promise promise){
+        if(!BillingSdkOfferIndex.isStrategy(strategy)){
+            promise.reject(String.valueOf(BillingClient.BillingResponseCode.DEVELOPER_ERROR), "Unknown offer strategy: " + strategy + ".");
+            return;
+        }
+
+        if(productDetailsStore.contains(productId)){
+            promise.resolve(getResolvedOffer(productId, strategy, tag, basePlanId));
+            return;
+        }
+
+        String productType = productDetailsStore.getProductType(productId);
+        if(productType == null){
+            promise.reject(BillingSdkConstants.E_PRODUCT_NOT_QUERIED, "The subscription must be queried before resolving its offers.");
+            return;
+        }
+
+        productDetailsBatcher.query(Collections.singletonList(productId), productType, new BillingSdkProductDetailsBatcher.Callback() {
+            @Override
+            public void onProductDetails(List<ProductDetails> productDetails) {
+                for(ProductDetails product: productDetails) productDetailsStore.put(product);
+                promise.resolve(getResolvedOffer(productId, strategy, tag, basePlanId));
+            }
+
+            @Override
+            public void onError(BillingResult billingResult) {
+                promise.reject(String.valueOf(billingResult.getResponseCode()), billingResult.getDebugMessage());
+            }
+        });
+    }
+
+    private @Nullable WritableMap getResolvedOffer(String productId, String strategy, @Nullable String tag, @Nullable String basePlanId){
+        BillingSdkOfferIndex offerIndex = productDetailsStore.getOfferIndex(productId);
+        if(offerIndex == null) return null;
+
+        BillingSdkOfferIndex.Offer offer = offerIndex.resolve(strategy, tag, basePlanId);
+        return offer == null ? null : offer.toMap();
     }
 
     public void launchBillingFlow (
@@ -166,28 +806,106 @@ public class BillingSdk {
       @Nullable String obfuscatedAccountId,
       @Nullable String obfuscatedProfileId,
       Promise promise){
-            Activity activity = context.getCurrentActivity();
+        launchBillingFlow(Collections.singletonList(productId), Collections.singletonList(offerToken), oldPurchaseToken, subscriptionReplacementMode, obfuscatedAccountId, obfuscatedProfileId, 0, promise);
+    }
+
+    /**
+     * Launches the billing flow for several products bought together, e.g. a subscription and its
+     * add-ons. `offerTokens` holds the offer of each product, null for in app products.
+     *
+     * With a `resultTimeout` of 0 the promise resolves with null once the flow is launched. Otherwise
+     * it resolves with the purchase of one of the products reported by onPurchasesUpdated, or rejects
+     * with the response code of the launch or of the update (e.g. USER_CANCELED), or with
+     * E_PURCHASE_TIMEOUT after resultTimeout milliseconds.
+     */
+    public void launchBillingFlow (
+      final List<String> productIds,
+      final List<String> offerTokens,
+      @Nullable final String oldPurchaseToken,
+      final int subscriptionReplacementMode,
+      @Nullable final String obfuscatedAccountId,
+      @Nullable final String obfuscatedProfileId,
+      final long resultTimeout,
+      final Promise promise){
+        final Activity activity = context.getCurrentActivity();
 
         if(activity == null){
             promise.reject(BillingSdkConstants.E_ACTIVITY_NULL, "getCurrentActivity returned null.");
             return;
         }
 
-        BillingFlowParams.ProductDetailsParams.Builder builder = BillingFlowParams.ProductDetailsParams.newBuilder();
+        Map<String, List<String>> missingProductIdsByType = new HashMap<>();
+        for(String productId: productIds){
+            if(productDetailsStore.contains(productId)) continue;
+
+            String productType = productDetailsStore.getProductType(productId);
+            if(productType == null){
+                promise.reject(BillingSdkConstants.E_PRODUCT_NOT_QUERIED, "The in app product or subscription must be queried before calling launchBillingFlow.");
+                return;
+            }
 
-        ProductDetails productDetail = findProductDetailById(productId);
-        if(productDetail == null){
-            promise.reject(BillingSdkConstants.E_PRODUCT_NOT_QUERIED, "The in app product or subscription must be queried before calling launchBillingFlow.");
+            List<String> missingProductIds = missingProductIdsByType.get(productType);
+            if(missingProductIds == null){
+                missingProductIds = new ArrayList<>();
+                missingProductIdsByType.put(productType, missingProductIds);
+            }
+            missingProductIds.add(productId);
+        }
+
+        if(missingProductIdsByType.isEmpty()){
+            launchBillingFlow(activity, productIds, offerTokens, oldPurchaseToken, subscriptionReplacementMode, obfuscatedAccountId, obfuscatedProfileId, resultTimeout, promise);
             return;
         }
 
-        builder.setProductDetails(productDetail);
+        // The products were evicted or expired from the store, query them again since they have been queried before.
+        final AtomicInteger remainingQueries = new AtomicInteger(missingProductIdsByType.size());
+        final AtomicBoolean failed = new AtomicBoolean(false);
+
+        for(Map.Entry<String, List<String>> entry: missingProductIdsByType.entrySet()){
+            productDetailsBatcher.query(entry.getValue(), entry.getKey(), new BillingSdkProductDetailsBatcher.Callback() {
+                @Override
+                public void onProductDetails(List<ProductDetails> productDetails) {
+                    for(ProductDetails product: productDetails) productDetailsStore.put(product);
 
-        if(offerToken != null){
-          builder.setOfferToken(offerToken);
+                    if(remainingQueries.decrementAndGet() == 0 && !failed.get())
+                        launchBillingFlow(activity, productIds, offerTokens, oldPurchaseToken, subscriptionReplacementMode, obfuscatedAccountId, obfuscatedProfileId, resultTimeout, promise);
+                }
+
+                @Override
+                public void onError(BillingResult billingResult) {
+                    if(failed.compareAndSet(false, true))
+                        promise.reject(String.valueOf(billingResult.getResponseCode()), billingResult.getDebugMessage());
+                }
+            });
         }
+    }
 
-        ImmutableList productDetailsParamsList = ImmutableList.of(builder.build());
+    private void launchBillingFlow (
+      Activity activity,
+      List<String> productIds,
+      List<String> offerTokens,
+      @Nullable String oldPurchaseToken,
+      int subscriptionReplacementMode,
+      @Nullable String obfuscatedAccountId,
+      @Nullable String obfuscatedProfileId,
+      long resultTimeout,
+      Promise promise){
+        List<BillingFlowParams.ProductDetailsParams> productDetailsParamsList = new ArrayList<>();
+
+        for(int i = 0; i < productIds.size(); i++){
+            String productId = productIds.get(i);
+            BillingFlowParams.ProductDetailsParams productDetailsParams = productDetailsStore.getProductDetailsParams(productId, offerTokens.get(i));
+
+            if(productDetailsParams == null){
+                if(!productDetailsStore.contains(productId))
+                    promise.reject(BillingSdkConstants.E_PRODUCT_NOT_QUERIED, "The in app product or subscription could not be queried again.");
+                else
+                    promise.reject(BillingSdkConstants.E_INVALID_OFFER, "The offer token is missing or is not an offer of the subscription " + productId + ".");
+                return;
+            }
+
+            productDetailsParamsList.add(productDetailsParams);
+        }
 
         BillingFlowParams.Builder billingFlowParamsBuilder = BillingFlowParams.newBuilder();
         billingFlowParamsBuilder.setProductDetailsParamsList(productDetailsParamsList);
@@ -209,41 +927,240 @@ public class BillingSdk {
 
         BillingFlowParams billingFlowParams = billingFlowParamsBuilder.build();
 
-        // Launch the billing flow
-        BillingResult billingResult = billingClient.launchBillingFlow(activity, billingFlowParams);
-        promise.resolve(null);
+        connectionManager.execute(new BillingSdkConnectionManager.Operation() {
+            @Override
+            public void run() {
+                // Launch the billing flow
+                long startedAt = BillingSdkMetrics.start();
+                BillingSdkPurchaseFlows.Flow flow = resultTimeout > 0 ? purchaseFlows.start(productIds, resultTimeout, resolveWithPurchase(startedAt, promise)) : null;
+                BillingResult billingResult = billingClient.launchBillingFlow(activity, billingFlowParams);
+                metrics.record(BillingSdkMetrics.LAUNCH_BILLING_FLOW, startedAt, billingResult);
+
+                if(flow == null){
+                    promise.resolve(null);
+                    return;
+                }
+
+                if(billingResult.getResponseCode() != BillingClient.BillingResponseCode.OK && purchaseFlows.cancel(flow))
+                    promise.reject(String.valueOf(billingResult.getResponseCode()), billingResult.getDebugMessage());
+            }
+
+            @Override
+            public void onError(BillingResult billingResult) {
+                promise.reject(String.valueOf(billingResult.getResponseCode()), billingResult.getDebugMessage());
+            }
+        });
+    }
+
+    private BillingSdkPurchaseFlows.Callback resolveWithPurchase(final long startedAt, final Promise promise){
+        return new BillingSdkPurchaseFlows.Callback() {
+            @Override
+            public void onPurchase(BillingResult billingResult, Purchase purchase) {
+                metrics.record(BillingSdkMetrics.PURCHASE_FLOW, startedAt, billingResult);
+                promise.resolve(payloadMemo.convertPurchase(purchase, BillingSdkProjection.ALL));
+            }
+
+            @Override
+            public void onError(BillingResult billingResult) {
+                metrics.record(BillingSdkMetrics.PURCHASE_FLOW, startedAt, billingResult);
+                promise.reject(String.valueOf(billingResult.getResponseCode()), billingResult.getDebugMessage());
+            }
+
+            @Override
+            public void onTimeout() {
+                promise.reject(BillingSdkConstants.E_PURCHASE_TIMEOUT, "No purchase update was received for the billing flow in time.");
+            }
+        };
+    }
+
+    private void queryPurchasesAsync(final String productType, final PurchasesResponseListener listener){
+        retryPolicy.execute(new BillingSdkRetryPolicy.Call<List<Purchase>>() {
+            @Override
+            public void run(final BillingSdkRetryPolicy.Result<List<Purchase>> result) {
+                connectionManager.execute(new BillingSdkConnectionManager.Operation() {
+                    @Override
+                    public void run() {
+                        final long startedAt = BillingSdkMetrics.start();
+                        billingClient.queryPurchases(productType, new PurchasesResponseListener() {
+                            @Override
+                            public void onQueryPurchasesResponse(@NonNull BillingResult billingResult, @NonNull List<Purchase> purchaseList) {
+                                metrics.record(BillingSdkMetrics.QUERY_PURCHASES, startedAt, billingResult);
+                                result.onResult(billingResult, purchaseList);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onError(BillingResult billingResult) {
+                        result.onResult(billingResult, new ArrayList<Purchase>());
+                    }
+                });
+            }
+        }, new BillingSdkRetryPolicy.Result<List<Purchase>>() {
+            @Override
+            public void onResult(final BillingResult billingResult, @Nullable List<Purchase> purchases) {
+                final List<Purchase> purchaseList = purchases != null ? purchases : new ArrayList<Purchase>();
+                callbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onQueryPurchasesResponse(billingResult, purchaseList);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Queries the active purchases for JS, serving the result of the startup prefetch when there is one.
+     */
+    private void queryActivePurchases(String productType, PurchasesResponseListener listener){
+        if(prefetchResults.takePurchases(productType, listener)) return;
+        queryPurchasesAsync(productType, listener);
+    }
+
+    /**
+     * Connects and loads the given product details and, if requested, the active purchases before JS
+     * asks for them. The results are held by prefetchResults for the first JS queries. Only the first
+     * call prefetches, React contexts recreated later find the products in the store.
+     */
+    public void prefetch(Map<String, List<String>> productIdsByType, boolean includePurchases){
+        if(!prefetched.compareAndSet(false, true)) return;
+
+        for(Map.Entry<String, List<String>> entry: productIdsByType.entrySet()){
+            final String productType = entry.getKey();
+            final List<String> productIds = entry.getValue();
+
+            productDetailsBatcher.query(productIds, productType, new BillingSdkProductDetailsBatcher.Callback() {
+                @Override
+                public void onProductDetails(List<ProductDetails> productDetails) {
+                    storeProductDetails(productDetails, productType);
+                    prefetchResults.putProductDetails(productType, productIds, productDetails);
+                }
+
+                @Override
+                public void onError(BillingResult billingResult) {
+                    // JS queries these products again on its own.
+                }
+            });
+        }
+
+        if(!includePurchases) return;
+
+        for(final String productType: new String[]{ BillingClient.ProductType.INAPP, BillingClient.ProductType.SUBS }){
+            prefetchResults.startPurchases(productType);
+            queryPurchasesAsync(productType, new PurchasesResponseListener() {
+                @Override
+                public void onQueryPurchasesResponse(@NonNull BillingResult billingResult, @NonNull List<Purchase> purchaseList) {
+                    // The purchases found at startup are replayed as added to the first PURCHASES_CHANGED listener.
+                    if(billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK)
+                        sendPurchasesChanged(replacePurchases(productType, purchaseList));
+                    prefetchResults.putPurchases(productType, billingResult, purchaseList);
+                }
+            });
+        }
     }
 
-   
-    public void queryPurchases(String productType, Promise promise){
-        QueryPurchasesParams params = QueryPurchasesParams.newBuilder().setProductType(productType).build();
+    public void queryPurchases(String productType, BillingSdkProjection projection, Promise promise){
+        queryActivePurchases(productType, new PurchasesResponseListener() {
+            @Override
+            public void onQueryPurchasesResponse(@NonNull BillingResult billingResult, @NonNull List<Purchase> purchaseList) {
+                if(billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK){
+                    promise.resolve(payloadMemo.convertPurchaseList(purchaseList, projection));
+                    sendPurchasesChanged(replacePurchases(productType, purchaseList));
+                    return;
+                }
+
+                promise.reject(String.valueOf(billingResult.getResponseCode()), billingResult.getDebugMessage());
+            }
+        });
+
+    }
 
-        billingClient.queryPurchasesAsync(params, new PurchasesResponseListener() {
+    /**
+     * Queries the active purchases and resolves their first page along with a cursor to fetch the
+     * next ones. The other pages are only converted when fetched.
+     */
+    public void queryPurchasesPaged(final String productType, final BillingSdkProjection projection, final int pageSize, final Promise promise){
+        queryActivePurchases(productType, new PurchasesResponseListener() {
             @Override
             public void onQueryPurchasesResponse(@NonNull BillingResult billingResult, @NonNull List<Purchase> purchaseList) {
                 if(billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK){
-                    promise.resolve(BillingSdkConverter.convertPurchaseListToArray(purchaseList));
+                    promise.resolve(resultCursors.open(purchaseList, pageSize, new BillingSdkResultCursors.PageConverter<Purchase>() {
+                        @Override
+                        public ReadableArray convert(List<Purchase> page) {
+                            return payloadMemo.convertPurchaseList(page, projection);
+                        }
+                    }));
+                    sendPurchasesChanged(replacePurchases(productType, purchaseList));
                     return;
                 }
 
                 promise.reject(String.valueOf(billingResult.getResponseCode()), billingResult.getDebugMessage());
             }
         });
+    }
 
+    /**
+     * Resolves the next page of a cursor opened by queryProductDetailsPaged or queryPurchasesPaged.
+     */
+    public void fetchPage(String cursor, Promise promise){
+        WritableMap page = resultCursors.fetchPage(cursor);
+        if(page == null){
+            promise.reject(String.valueOf(BillingClient.BillingResponseCode.DEVELOPER_ERROR), "The cursor is unknown, fully read or expired.");
+            return;
+        }
+
+        promise.resolve(page);
     }
 
-    public void consume(String purchaseToken, Promise promise){
-        ConsumeParams params = ConsumeParams.newBuilder().setPurchaseToken(purchaseToken).build();
-        billingClient.consumeAsync(params, new ConsumeResponseListener() {
+    public void releaseCursor(String cursor, Promise promise){
+        resultCursors.release(cursor);
+        promise.resolve(null);
+    }
+
+    /**
+     * Queries the active purchases and resolves them only if they differ from the result identified
+     * by `etag`, which JS already holds. Polling unchanged purchases only sends the etag over the bridge.
+     */
+    public void queryPurchasesIfChanged(String productType, @Nullable String etag, BillingSdkProjection projection, Promise promise){
+        queryActivePurchases(productType, new PurchasesResponseListener() {
             @Override
-            public void onConsumeResponse(@NonNull BillingResult billingResult, @NonNull String purchaseToken) {
-                int responseCode = billingResult.getResponseCode();
-                if(responseCode == BillingClient.BillingResponseCode.OK){
-                    promise.resolve(null);
+            public void onQueryPurchasesResponse(@NonNull BillingResult billingResult, @NonNull List<Purchase> purchaseList) {
+                if(billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK){
+                    String currentEtag = BillingSdkPayloadMemo.getPurchaseListEtag(purchaseList, projection);
+                    boolean unchanged = currentEtag.equals(etag);
+                    promise.resolve(createIfChangedResult(currentEtag, unchanged ? null : payloadMemo.convertPurchaseList(purchaseList, projection)));
+                    sendPurchasesChanged(replacePurchases(productType, purchaseList));
                     return;
                 }
-                promise.reject(String.valueOf(responseCode), billingResult.getDebugMessage());
+
+                promise.reject(String.valueOf(billingResult.getResponseCode()), billingResult.getDebugMessage());
             }
         });
     }
+
+    /**
+     * Resolves the first page of the purchases recorded by the purchase ledger that match the filters,
+     * most recent purchase first, along with a cursor to fetch the next ones.
+     */
+    public void queryPurchaseLedger(@Nullable String productId, @Nullable String purchaseToken, long startTime, long endTime, int pageSize, Promise promise){
+        List<BillingSdkPurchaseLedger.Record> records = purchaseLedger.query(productId, purchaseToken, startTime, endTime);
+
+        promise.resolve(resultCursors.open(records, pageSize, new BillingSdkResultCursors.PageConverter<BillingSdkPurchaseLedger.Record>() {
+            @Override
+            public ReadableArray convert(List<BillingSdkPurchaseLedger.Record> page) {
+                WritableArray array = new WritableNativeArray();
+                for(BillingSdkPurchaseLedger.Record record: page) array.pushMap(record.toMap());
+                return array;
+            }
+        }));
+    }
+
+    public void consume(String purchaseToken, Promise promise){
+        consumeRunner.run(purchaseToken, resolveWithResult(promise));
+    }
+
+    public void consumeAll(List<String> purchaseTokens, int concurrency, Promise promise){
+        consumeRunner.runAll(purchaseTokens, concurrency, resolveWithResults(promise));
+    }
 }
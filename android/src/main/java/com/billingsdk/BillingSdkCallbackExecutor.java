@@ -0,0 +1,142 @@
+package com.billingsdk;
+
+import android.os.Looper;
+
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeMap;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background executor running the work done in Google Play callbacks: payload conversion, promise
+ * resolution and event emission. The queue is bounded; when it is full the task runs on the calling
+ * thread, unless that is the main looper, in which case it is handed to a single overflow thread so
+ * that conversions do not run on the UI thread. The overflow queue is bounded as well: once it is full
+ * too, the main thread runs the task itself, slowing down the producer rather than queueing without limit.
+ */
+public class BillingSdkCallbackExecutor implements Executor {
+    public static final int DEFAULT_THREADS = 1;
+    public static final int DEFAULT_QUEUE_SIZE = 128;
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong callerRuns = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong totalQueueTime = new AtomicLong();
+    private final AtomicLong maxQueueTime = new AtomicLong();
+
+    private final ThreadPoolExecutor overflowExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(DEFAULT_QUEUE_SIZE), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "BillingSdkCallbackOverflow");
+        }
+    }, new ThreadPoolExecutor.AbortPolicy());
+
+    private volatile ThreadPoolExecutor executor;
+    private volatile int queueSize;
+    private volatile boolean closed = false;
+
+    public BillingSdkCallbackExecutor() {
+        overflowExecutor.allowCoreThreadTimeOut(true);
+        configure(DEFAULT_THREADS, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Replaces the thread pool. Tasks already queued on the previous pool still run.
+     */
+    public synchronized void configure(int threads, int queueSize) {
+        if(closed) return;
+        threads = Math.max(1, threads);
+        this.queueSize = Math.max(1, queueSize);
+
+        ThreadPoolExecutor previousExecutor = executor;
+        ThreadPoolExecutor newExecutor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(this.queueSize), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "BillingSdkCallback-" + threadCount.incrementAndGet());
+            }
+        });
+        newExecutor.allowCoreThreadTimeOut(true);
+        executor = newExecutor;
+
+        if(previousExecutor != null) previousExecutor.shutdown();
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        submitted.incrementAndGet();
+        final long queuedAt = System.nanoTime();
+
+        Runnable measuredTask = new Runnable() {
+            @Override
+            public void run() {
+                long queueTime = System.nanoTime() - queuedAt;
+                totalQueueTime.addAndGet(queueTime);
+                updateMaxQueueTime(queueTime);
+
+                try {
+                    task.run();
+                } finally {
+                    completed.incrementAndGet();
+                }
+            }
+        };
+
+        try {
+            executor.execute(measuredTask);
+        } catch (RejectedExecutionException e) {
+            if(!closed && Looper.myLooper() == Looper.getMainLooper()){
+                try {
+                    overflowExecutor.execute(measuredTask);
+                    overflowed.incrementAndGet();
+                    return;
+                } catch (RejectedExecutionException overflowRejection) {
+                    // Both queues are full, fall through and run the task on the main thread.
+                }
+            }
+
+            callerRuns.incrementAndGet();
+            measuredTask.run();
+        }
+    }
+
+    /**
+     * Stops the threads once the queued tasks are done. Tasks submitted afterwards run on the calling thread.
+     */
+    public synchronized void close() {
+        closed = true;
+        executor.shutdown();
+        overflowExecutor.shutdown();
+    }
+
+    private void updateMaxQueueTime(long queueTime) {
+        long max = maxQueueTime.get();
+        while(queueTime > max && !maxQueueTime.compareAndSet(max, queueTime)) max = maxQueueTime.get();
+    }
+
+    public WritableMap toMap() {
+        ThreadPoolExecutor currentExecutor = executor;
+        long completedCount = completed.get();
+
+        WritableMap json = new WritableNativeMap();
+        json.putInt("threads", currentExecutor.getMaximumPoolSize());
+        json.putInt("activeThreads", currentExecutor.getActiveCount());
+        json.putInt("queueSize", queueSize);
+        json.putInt("queued", currentExecutor.getQueue().size());
+        json.putDouble("submitted", submitted.get());
+        json.putDouble("completed", completedCount);
+        json.putDouble("callerRuns", callerRuns.get());
+        json.putDouble("overflowed", overflowed.get());
+        json.putDouble("meanQueueTime", completedCount == 0 ? 0 : totalQueueTime.get() / 1e6 / completedCount);
+        json.putDouble("maxQueueTime", maxQueueTime.get() / 1e6);
+        return json;
+    }
+}
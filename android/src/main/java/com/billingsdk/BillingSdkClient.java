@@ -0,0 +1,47 @@
+package com.billingsdk;
+
+import android.app.Activity;
+
+import com.android.billingclient.api.AcknowledgePurchaseResponseListener;
+import com.android.billingclient.api.BillingClientStateListener;
+import com.android.billingclient.api.BillingFlowParams;
+import com.android.billingclient.api.BillingResult;
+import com.android.billingclient.api.ConsumeResponseListener;
+import com.android.billingclient.api.ProductDetails;
+import com.android.billingclient.api.PurchasesResponseListener;
+import com.android.billingclient.api.PurchasesUpdatedListener;
+
+import java.util.List;
+
+/**
+ * The calls BillingSdk makes to Google Play. Requests take plain values instead of the Play Billing
+ * params objects, which cannot be read back, so that implementations other than BillingSdkPlayClient
+ * (e.g. a fake for load tests) can serve them.
+ */
+public interface BillingSdkClient {
+    interface Factory {
+        BillingSdkClient create(PurchasesUpdatedListener purchasesUpdatedListener);
+    }
+
+    interface ProductDetailsListener {
+        void onProductDetailsResponse(BillingResult billingResult, List<ProductDetails> productDetailsList);
+    }
+
+    boolean isReady();
+
+    int getConnectionState();
+
+    void startConnection(BillingClientStateListener listener);
+
+    void endConnection();
+
+    void queryProductDetails(List<String> productIds, String productType, ProductDetailsListener listener);
+
+    void queryPurchases(String productType, PurchasesResponseListener listener);
+
+    void acknowledgePurchase(String purchaseToken, AcknowledgePurchaseResponseListener listener);
+
+    void consume(String purchaseToken, ConsumeResponseListener listener);
+
+    BillingResult launchBillingFlow(Activity activity, BillingFlowParams billingFlowParams);
+}
@@ -0,0 +1,148 @@
+package com.billingsdk;
+
+import com.android.billingclient.api.BillingClient;
+import com.android.billingclient.api.BillingClientStateListener;
+import com.android.billingclient.api.BillingResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Owns the connection of the billing client. Operations are run right away when the client is ready,
+ * otherwise they are queued and a single connection attempt is shared by every caller. Operations
+ * still queued when the service disconnects are replayed on a new connection attempt instead of failing.
+ */
+public class BillingSdkConnectionManager {
+    private static final int MAX_RECONNECT_ATTEMPTS = 3;
+
+    public interface Operation {
+        void run();
+        void onError(BillingResult billingResult);
+    }
+
+    public interface Listener {
+        void onConnected();
+        void onDisconnected();
+    }
+
+    private final BillingSdkClient billingClient;
+    private final BillingSdkMetrics metrics;
+    private final Listener listener;
+    private final List<Operation> queuedOperations = new ArrayList<>();
+    private boolean connecting = false;
+    private int reconnectAttempts = 0;
+    private volatile long connectStartedAt = 0;
+
+    public BillingSdkConnectionManager(BillingSdkClient billingClient, BillingSdkMetrics metrics, Listener listener) {
+        this.billingClient = billingClient;
+        this.metrics = metrics;
+        this.listener = listener;
+    }
+
+    private final BillingClientStateListener stateListener = new BillingClientStateListener() {
+        @Override
+        public void onBillingSetupFinished(BillingResult billingResult) {
+            boolean isOk = billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK;
+            List<Operation> operations;
+
+            metrics.record(BillingSdkMetrics.START_CONNECTION, connectStartedAt, billingResult);
+            if(isOk) metrics.onConnected();
+
+            synchronized (BillingSdkConnectionManager.this) {
+                connecting = false;
+                if(isOk) reconnectAttempts = 0;
+                operations = new ArrayList<>(queuedOperations);
+                queuedOperations.clear();
+            }
+
+            if(isOk) listener.onConnected();
+
+            for(Operation operation: operations){
+                if(isOk) operation.run();
+                else operation.onError(billingResult);
+            }
+        }
+
+        @Override
+        public void onBillingServiceDisconnected() {
+            boolean shouldReconnect;
+            List<Operation> failedOperations = new ArrayList<>();
+            metrics.onDisconnected();
+
+            synchronized (BillingSdkConnectionManager.this) {
+                connecting = false;
+                shouldReconnect = !queuedOperations.isEmpty() && reconnectAttempts < MAX_RECONNECT_ATTEMPTS;
+
+                if(shouldReconnect){
+                    reconnectAttempts++;
+                    connecting = true;
+                } else {
+                    failedOperations.addAll(queuedOperations);
+                    queuedOperations.clear();
+                }
+            }
+
+            listener.onDisconnected();
+
+            if(shouldReconnect){
+                connect();
+                return;
+            }
+
+            BillingResult billingResult = createDisconnectedResult("The billing service disconnected before the operation could run.");
+            for(Operation operation: failedOperations) operation.onError(billingResult);
+        }
+    };
+
+    private static BillingResult createDisconnectedResult(String debugMessage) {
+        return BillingResult.newBuilder()
+                .setResponseCode(BillingClient.BillingResponseCode.SERVICE_DISCONNECTED)
+                .setDebugMessage(debugMessage)
+                .build();
+    }
+
+    /**
+     * Runs the operation once the client is ready, connecting it first if needed.
+     */
+    public void execute(Operation operation) {
+        boolean isReady;
+
+        synchronized (this) {
+            isReady = billingClient.isReady();
+            if(!isReady){
+                queuedOperations.add(operation);
+                if(connecting) return;
+
+                connecting = true;
+                reconnectAttempts = 0;
+            }
+        }
+
+        if(isReady) operation.run();
+        else connect();
+    }
+
+    private void connect() {
+        connectStartedAt = BillingSdkMetrics.start();
+        billingClient.startConnection(stateListener);
+    }
+
+    /**
+     * Ends the connection. Operations still waiting for it fail with SERVICE_DISCONNECTED.
+     */
+    public void endConnection() {
+        List<Operation> failedOperations;
+
+        synchronized (this) {
+            connecting = false;
+            failedOperations = new ArrayList<>(queuedOperations);
+            queuedOperations.clear();
+        }
+
+        billingClient.endConnection();
+        metrics.onDisconnected();
+
+        BillingResult billingResult = createDisconnectedResult("The billing connection was ended.");
+        for(Operation operation: failedOperations) operation.onError(billingResult);
+    }
+}
@@ -3,7 +3,12 @@ package com.billingsdk;
 public class BillingSdkConstants {
     public static String PURCHASE_UPDATED = "billing-manager-purchase-updated";
     public static String BILLING_SERVICE_DISCONNECTED = "billing-manager-service-disconnected";
+    public static String PRODUCT_DETAILS_UPDATED = "billing-manager-product-details-updated";
+    public static String PURCHASES_CHANGED = "billing-manager-purchases-changed";
+    public static String PENDING_OPERATION_RESULT = "billing-manager-pending-operation-result";
 
     public static String E_ACTIVITY_NULL = "100";
     public static String E_PRODUCT_NOT_QUERIED = "101";
+    public static String E_INVALID_OFFER = "102";
+    public static String E_PURCHASE_TIMEOUT = "103";
 }
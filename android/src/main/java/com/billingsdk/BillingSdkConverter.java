@@ -6,103 +6,164 @@ import com.android.billingclient.api.Purchase;
 import com.android.billingclient.api.PurchaseHistoryRecord;
 import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.WritableNativeArray;
 import com.facebook.react.bridge.WritableNativeMap;
 
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 public class BillingSdkConverter {
+    /**
+     * Creates the maps and arrays payloads are written to. Payloads are written to native maps and
+     * arrays, the benchmarks swap in an in-memory writer so that the converter runs on a plain JVM.
+     */
+    public interface PayloadWriter {
+        WritableMap createMap();
+        WritableArray createArray();
+    }
+
+    public static final PayloadWriter NATIVE_WRITER = new PayloadWriter() {
+        @Override
+        public WritableMap createMap() {
+            return new WritableNativeMap();
+        }
+
+        @Override
+        public WritableArray createArray() {
+            return new WritableNativeArray();
+        }
+    };
+
+    private static volatile PayloadWriter writer = NATIVE_WRITER;
+
+    /**
+     * Replaces the payload writer. BillingSdkPayloadMemo expects native maps, so anything other than
+     * NATIVE_WRITER is only meant for benchmarks.
+     */
+    static void setPayloadWriter(PayloadWriter payloadWriter) {
+        writer = payloadWriter;
+    }
+
+    private static WritableMap createMap() {
+        return writer.createMap();
+    }
+
+    private static WritableArray createArray() {
+        return writer.createArray();
+    }
+
     private static ReadableArray stringListToArray (List<String> stringList){
-        WritableArray array = new WritableNativeArray();
+        WritableArray array = createArray();
         for(String str: stringList) array.pushString(str);
         return array;
     }
 
-    private static ReadableArray convertPricingPhaseListToArray (List<ProductDetails.PricingPhase> pricingPhaseList){
-        WritableArray array = new WritableNativeArray();
+    static ReadableArray convertPricingPhaseListToArray (List<ProductDetails.PricingPhase> pricingPhaseList, BillingSdkProjection projection){
+        WritableArray array = createArray();
 
         for(ProductDetails.PricingPhase pricingPhase: pricingPhaseList){
-            WritableMap json = new WritableNativeMap();
-
-            json.putString("billingPeriod", pricingPhase.getBillingPeriod());
-            json.putString("formattedPrice", pricingPhase.getFormattedPrice());
-            json.putString("priceAmountMicros", String.valueOf(pricingPhase.getPriceAmountMicros()));
-            json.putString("priceCurrencyCode", pricingPhase.getPriceCurrencyCode());
-            json.putInt("recurrenceMode", pricingPhase.getRecurrenceMode());
-            json.putInt("billingCycleCount", pricingPhase.getBillingCycleCount());
+            WritableMap json = createMap();
+
+            if(projection.includes("billingPeriod")) json.putString("billingPeriod", pricingPhase.getBillingPeriod());
+            if(projection.includes("formattedPrice")) json.putString("formattedPrice", pricingPhase.getFormattedPrice());
+            if(projection.includes("priceAmountMicros")) json.putString("priceAmountMicros", String.valueOf(pricingPhase.getPriceAmountMicros()));
+            if(projection.includes("priceCurrencyCode")) json.putString("priceCurrencyCode", pricingPhase.getPriceCurrencyCode());
+            if(projection.includes("recurrenceMode")) json.putInt("recurrenceMode", pricingPhase.getRecurrenceMode());
+            if(projection.includes("billingCycleCount")) json.putInt("billingCycleCount", pricingPhase.getBillingCycleCount());
             array.pushMap(json);
         }
 
         return array;
     }
 
-    private static ReadableArray convertSubscriptionOfferDetailsListToArray (List<ProductDetails.SubscriptionOfferDetails> subscriptionOfferDetails) {
-        WritableArray array = new WritableNativeArray();
+    private static ReadableArray convertSubscriptionOfferDetailsListToArray (List<ProductDetails.SubscriptionOfferDetails> subscriptionOfferDetails, BillingSdkProjection projection) {
+        WritableArray array = createArray();
 
         for(ProductDetails.SubscriptionOfferDetails details: subscriptionOfferDetails){
-            WritableMap json = new WritableNativeMap();
+            WritableMap json = createMap();
 
-            json.putString("basePlanId", details.getBasePlanId());
-            json.putString("offerToken", details.getOfferToken());
+            if(projection.includes("basePlanId")) json.putString("basePlanId", details.getBasePlanId());
+            if(projection.includes("offerToken")) json.putString("offerToken", details.getOfferToken());
 
-            String offerId = details.getOfferId();
-            if(offerId != null) json.putString("offerId", details.getOfferId());
-            else json.putNull("offerId");
+            if(projection.includes("offerId")){
+                String offerId = details.getOfferId();
+                if(offerId != null) json.putString("offerId", details.getOfferId());
+                else json.putNull("offerId");
+            }
 
-            json.putArray("offerTags", stringListToArray(details.getOfferTags()));
-            json.putArray("pricingPhases", convertPricingPhaseListToArray(details.getPricingPhases().getPricingPhaseList()));
+            if(projection.includes("offerTags"))
+                json.putArray("offerTags", stringListToArray(details.getOfferTags()));
+            if(projection.includes("pricingPhases"))
+                json.putArray("pricingPhases", convertPricingPhaseListToArray(details.getPricingPhases().getPricingPhaseList(), projection.get("pricingPhases")));
             array.pushMap(json);
         }
         return array;
     }
 
-    private static ReadableMap convertOneTimePurchaseOfferDetailsToJson (ProductDetails.OneTimePurchaseOfferDetails oneTimePurchaseOfferDetails) {
-        WritableMap json = new WritableNativeMap();
+    private static ReadableMap convertOneTimePurchaseOfferDetailsToJson (ProductDetails.OneTimePurchaseOfferDetails oneTimePurchaseOfferDetails, BillingSdkProjection projection) {
+        WritableMap json = createMap();
 
-        json.putString("formattedPrice", oneTimePurchaseOfferDetails.getFormattedPrice());
-        json.putString("priceCurrencyCode", oneTimePurchaseOfferDetails.getPriceCurrencyCode());
-        json.putString("priceAmountMicros", String.valueOf(oneTimePurchaseOfferDetails.getPriceAmountMicros()));
+        if(projection.includes("formattedPrice")) json.putString("formattedPrice", oneTimePurchaseOfferDetails.getFormattedPrice());
+        if(projection.includes("priceCurrencyCode")) json.putString("priceCurrencyCode", oneTimePurchaseOfferDetails.getPriceCurrencyCode());
+        if(projection.includes("priceAmountMicros")) json.putString("priceAmountMicros", String.valueOf(oneTimePurchaseOfferDetails.getPriceAmountMicros()));
 
         return json;
     }
 
-    public static ReadableArray convertProductDetailsListToArray (List<ProductDetails> productDetailsList) {
-        WritableArray array = new WritableNativeArray();
+    public static WritableMap convertProductDetailsToJson (ProductDetails productDetails) {
+        return convertProductDetailsToJson(productDetails, BillingSdkProjection.ALL);
+    }
 
-        for(ProductDetails productDetails: productDetailsList){
-            WritableMap json = new WritableNativeMap();
+    public static WritableMap convertProductDetailsToJson (ProductDetails productDetails, BillingSdkProjection projection) {
+        WritableMap json = createMap();
 
-            json.putString("name", productDetails.getName());
-            json.putString("title", productDetails.getTitle());
-            json.putString("productId", productDetails.getProductId());
-            json.putString("productType", productDetails.getProductType());
-            json.putString("description", productDetails.getDescription());
+        if(projection.includes("name")) json.putString("name", productDetails.getName());
+        if(projection.includes("title")) json.putString("title", productDetails.getTitle());
+        if(projection.includes("productId")) json.putString("productId", productDetails.getProductId());
+        if(projection.includes("productType")) json.putString("productType", productDetails.getProductType());
+        if(projection.includes("description")) json.putString("description", productDetails.getDescription());
 
+        if(projection.includes("subscriptionOfferDetails")){
             List<ProductDetails.SubscriptionOfferDetails> subscriptionOfferDetailsList = productDetails.getSubscriptionOfferDetails();
             if(subscriptionOfferDetailsList != null)
-                json.putArray("subscriptionOfferDetails", convertSubscriptionOfferDetailsListToArray(subscriptionOfferDetailsList));
+                json.putArray("subscriptionOfferDetails", convertSubscriptionOfferDetailsListToArray(subscriptionOfferDetailsList, projection.get("subscriptionOfferDetails")));
             else
                 json.putNull("subscriptionOfferDetails");
+        }
 
+        if(projection.includes("oneTimePurchaseOfferDetails")){
             ProductDetails.OneTimePurchaseOfferDetails oneTimePurchaseOfferDetails = productDetails.getOneTimePurchaseOfferDetails();
             if(oneTimePurchaseOfferDetails != null)
-                json.putMap("oneTimePurchaseOfferDetails", convertOneTimePurchaseOfferDetailsToJson(oneTimePurchaseOfferDetails));
+                json.putMap("oneTimePurchaseOfferDetails", convertOneTimePurchaseOfferDetailsToJson(oneTimePurchaseOfferDetails, projection.get("oneTimePurchaseOfferDetails")));
             else
                 json.putNull("oneTimePurchaseOfferDetails");
-
-            array.pushMap(json);
         }
 
+        return json;
+    }
+
+    public static ReadableArray convertProductDetailsListToArray (List<ProductDetails> productDetailsList) {
+        return convertProductDetailsListToArray(productDetailsList, BillingSdkProjection.ALL);
+    }
+
+    public static ReadableArray convertProductDetailsListToArray (List<ProductDetails> productDetailsList, BillingSdkProjection projection) {
+        WritableArray array = createArray();
+        for(ProductDetails productDetails: productDetailsList) array.pushMap(convertProductDetailsToJson(productDetails, projection));
         return array;
     }
 
     public static ReadableArray convertPurchaseHistoryRecordListToArray (List<PurchaseHistoryRecord> purchaseHistoryRecordList) {
-        WritableArray array = new WritableNativeArray();
+        WritableArray array = createArray();
         for(PurchaseHistoryRecord purchaseHistoryRecord: purchaseHistoryRecordList){
-            WritableMap json = new WritableNativeMap();
+            WritableMap json = createMap();
 
             json.putString("developerPayload", purchaseHistoryRecord.getDeveloperPayload());
             json.putString("originalJson", purchaseHistoryRecord.getOriginalJson());
@@ -118,39 +179,128 @@ public class BillingSdkConverter {
         return array;
     }
 
-    private static ReadableMap convertAccountIdentifiersToJson (AccountIdentifiers accountIdentifiers){
-        WritableMap json = new WritableNativeMap();
+    private static ReadableMap convertAccountIdentifiersToJson (AccountIdentifiers accountIdentifiers, BillingSdkProjection projection){
+        WritableMap json = createMap();
 
-        json.putString("obfuscatedAccountId", accountIdentifiers.getObfuscatedAccountId());
-        json.putString("obfuscatedProfileId", accountIdentifiers.getObfuscatedProfileId());
+        if(projection.includes("obfuscatedAccountId")) json.putString("obfuscatedAccountId", accountIdentifiers.getObfuscatedAccountId());
+        if(projection.includes("obfuscatedProfileId")) json.putString("obfuscatedProfileId", accountIdentifiers.getObfuscatedProfileId());
 
         return json;
     }
 
-    public static ReadableArray convertPurchaseListToArray (List<Purchase> purchaseList) {
-        WritableArray array = new WritableNativeArray();
-
-        for(Purchase purchase: purchaseList){
-            WritableMap json = new WritableNativeMap();
+    public static WritableMap convertPurchaseToJson (Purchase purchase, BillingSdkProjection projection) {
+        WritableMap json = createMap();
 
+        if(projection.includes("accountIdentifiers")){
             AccountIdentifiers accountIdentifiers = purchase.getAccountIdentifiers();
-            if(accountIdentifiers != null) json.putMap("accountIdentifiers", convertAccountIdentifiersToJson(accountIdentifiers));
+            if(accountIdentifiers != null) json.putMap("accountIdentifiers", convertAccountIdentifiersToJson(accountIdentifiers, projection.get("accountIdentifiers")));
             else json.putNull("accountIdentifiers");
+        }
 
-            json.putString("developerPayload", purchase.getDeveloperPayload());
-            json.putString("orderId", purchase.getOrderId());
-            json.putString("originalJson", purchase.getOriginalJson());
-            json.putString("packageName", purchase.getPackageName());
-            json.putString("productId", purchase.getProducts().get(0));
-            json.putInt("purchaseState", purchase.getPurchaseState());
-            json.putString("purchaseTime", String.valueOf(purchase.getPurchaseTime()));
-            json.putString("purchaseToken", purchase.getPurchaseToken());
-            json.putInt("quantity", purchase.getQuantity());
-            json.putString("signature", purchase.getSignature());
-            json.putBoolean("isAcknowledged", purchase.isAcknowledged());
-            json.putBoolean("isAutoRenewing", purchase.isAutoRenewing());
+        if(projection.includes("developerPayload")) json.putString("developerPayload", purchase.getDeveloperPayload());
+        if(projection.includes("orderId")) json.putString("orderId", purchase.getOrderId());
+        if(projection.includes("originalJson")) json.putString("originalJson", purchase.getOriginalJson());
+        if(projection.includes("packageName")) json.putString("packageName", purchase.getPackageName());
+        if(projection.includes("productId")) json.putString("productId", purchase.getProducts().get(0));
+        if(projection.includes("purchaseState")) json.putInt("purchaseState", purchase.getPurchaseState());
+        if(projection.includes("purchaseTime")) json.putString("purchaseTime", String.valueOf(purchase.getPurchaseTime()));
+        if(projection.includes("purchaseToken")) json.putString("purchaseToken", purchase.getPurchaseToken());
+        if(projection.includes("quantity")) json.putInt("quantity", purchase.getQuantity());
+        if(projection.includes("signature")) json.putString("signature", purchase.getSignature());
+        if(projection.includes("isAcknowledged")) json.putBoolean("isAcknowledged", purchase.isAcknowledged());
+        if(projection.includes("isAutoRenewing")) json.putBoolean("isAutoRenewing", purchase.isAutoRenewing());
 
-            array.pushMap(json);
+        return json;
+    }
+
+    public static ReadableArray convertPurchaseListToArray (List<Purchase> purchaseList) {
+        return convertPurchaseListToArray(purchaseList, BillingSdkProjection.ALL);
+    }
+
+    public static ReadableArray convertPurchaseListToArray (List<Purchase> purchaseList, BillingSdkProjection projection) {
+        WritableArray array = createArray();
+        for(Purchase purchase: purchaseList) array.pushMap(convertPurchaseToJson(purchase, projection));
+        return array;
+    }
+
+    public static JSONObject convertMapToJSONObject (ReadableMap map) throws JSONException {
+        JSONObject object = new JSONObject();
+        ReadableMapKeySetIterator iterator = map.keySetIterator();
+
+        while(iterator.hasNextKey()){
+            String key = iterator.nextKey();
+            switch(map.getType(key)){
+                case Null: object.put(key, JSONObject.NULL); break;
+                case Boolean: object.put(key, map.getBoolean(key)); break;
+                case Number: object.put(key, map.getDouble(key)); break;
+                case String: object.put(key, map.getString(key)); break;
+                case Map: object.put(key, convertMapToJSONObject(map.getMap(key))); break;
+                case Array: object.put(key, convertArrayToJSONArray(map.getArray(key))); break;
+            }
+        }
+
+        return object;
+    }
+
+    public static JSONArray convertArrayToJSONArray (ReadableArray array) throws JSONException {
+        JSONArray jsonArray = new JSONArray();
+
+        for(int i=0; i<array.size(); i++){
+            switch(array.getType(i)){
+                case Null: jsonArray.put(JSONObject.NULL); break;
+                case Boolean: jsonArray.put(array.getBoolean(i)); break;
+                case Number: jsonArray.put(array.getDouble(i)); break;
+                case String: jsonArray.put(array.getString(i)); break;
+                case Map: jsonArray.put(convertMapToJSONObject(array.getMap(i))); break;
+                case Array: jsonArray.put(convertArrayToJSONArray(array.getArray(i))); break;
+            }
+        }
+
+        return jsonArray;
+    }
+
+    public static WritableMap convertJSONObjectToMap (JSONObject object) throws JSONException {
+        return convertJSONObjectToMap(object, BillingSdkProjection.ALL);
+    }
+
+    public static WritableMap convertJSONObjectToMap (JSONObject object, BillingSdkProjection projection) throws JSONException {
+        WritableMap json = createMap();
+        Iterator<String> keys = object.keys();
+
+        while(keys.hasNext()){
+            String key = keys.next();
+            if(!projection.includes(key)) continue;
+            Object value = object.get(key);
+
+            if(value == JSONObject.NULL) json.putNull(key);
+            else if(value instanceof Boolean) json.putBoolean(key, (Boolean) value);
+            else if(value instanceof Integer) json.putInt(key, (Integer) value);
+            else if(value instanceof Number) json.putDouble(key, ((Number) value).doubleValue());
+            else if(value instanceof JSONObject) json.putMap(key, convertJSONObjectToMap((JSONObject) value, projection.get(key)));
+            else if(value instanceof JSONArray) json.putArray(key, convertJSONArrayToArray((JSONArray) value, projection.get(key)));
+            else json.putString(key, String.valueOf(value));
+        }
+
+        return json;
+    }
+
+    public static WritableArray convertJSONArrayToArray (JSONArray jsonArray) throws JSONException {
+        return convertJSONArrayToArray(jsonArray, BillingSdkProjection.ALL);
+    }
+
+    public static WritableArray convertJSONArrayToArray (JSONArray jsonArray, BillingSdkProjection projection) throws JSONException {
+        WritableArray array = createArray();
+
+        for(int i=0; i<jsonArray.length(); i++){
+            Object value = jsonArray.get(i);
+
+            if(value == JSONObject.NULL) array.pushNull();
+            else if(value instanceof Boolean) array.pushBoolean((Boolean) value);
+            else if(value instanceof Integer) array.pushInt((Integer) value);
+            else if(value instanceof Number) array.pushDouble(((Number) value).doubleValue());
+            else if(value instanceof JSONObject) array.pushMap(convertJSONObjectToMap((JSONObject) value, projection));
+            else if(value instanceof JSONArray) array.pushArray(convertJSONArrayToArray((JSONArray) value, projection));
+            else array.pushString(String.valueOf(value));
         }
 
         return array;
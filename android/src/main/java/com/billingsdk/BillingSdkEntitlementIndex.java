@@ -0,0 +1,277 @@
+package com.billingsdk;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.Nullable;
+
+import com.android.billingclient.api.BillingClient;
+import com.android.billingclient.api.Purchase;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeArray;
+import com.facebook.react.bridge.WritableNativeMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the products the user is entitled to, i.e. the products of the purchased (not pending)
+ * purchases known to the SDK. It is kept up to date from the purchase diffs and the full purchase
+ * lists returned by Google Play, and persisted so that entitlements are known on an offline cold start.
+ * When purchase verification is enabled, purchases whose signature does not verify grant nothing.
+ */
+public class BillingSdkEntitlementIndex {
+    private static final String PREFERENCES_NAME = "com.billingsdk.entitlements";
+    private static final String ENTITLEMENT_KEY_PREFIX = "entitlement:";
+    private static final String SYNCED_AT_KEY_PREFIX = "syncedAt:";
+    private static final String KEY_PURCHASE_TOKEN = "purchaseToken";
+    private static final String KEY_PRODUCT_IDS = "productIds";
+    private static final String KEY_PRODUCT_TYPE = "productType";
+    private static final String KEY_IS_ACKNOWLEDGED = "isAcknowledged";
+    private static final String KEY_IS_AUTO_RENEWING = "isAutoRenewing";
+    private static final String KEY_QUANTITY = "quantity";
+    private static final String KEY_PURCHASE_TIME = "purchaseTime";
+
+    private static class Entitlement {
+        private final String purchaseToken;
+        private final List<String> productIds;
+        private final @Nullable String productType;
+        private final boolean isAcknowledged;
+        private final boolean isAutoRenewing;
+        private final int quantity;
+        private final long purchaseTime;
+
+        private Entitlement(String purchaseToken, List<String> productIds, @Nullable String productType, boolean isAcknowledged, boolean isAutoRenewing, int quantity, long purchaseTime) {
+            this.purchaseToken = purchaseToken;
+            this.productIds = productIds;
+            this.productType = productType;
+            this.isAcknowledged = isAcknowledged;
+            this.isAutoRenewing = isAutoRenewing;
+            this.quantity = quantity;
+            this.purchaseTime = purchaseTime;
+        }
+
+        private static Entitlement fromSnapshot(BillingSdkPurchaseStateStore.Snapshot snapshot) {
+            Purchase purchase = snapshot.purchase;
+            return new Entitlement(purchase.getPurchaseToken(), purchase.getProducts(), snapshot.productType, snapshot.isAcknowledged, snapshot.isAutoRenewing, snapshot.quantity, purchase.getPurchaseTime());
+        }
+
+        private static Entitlement fromPurchase(Purchase purchase, String productType) {
+            return new Entitlement(purchase.getPurchaseToken(), purchase.getProducts(), productType, purchase.isAcknowledged(), purchase.isAutoRenewing(), purchase.getQuantity(), purchase.getPurchaseTime());
+        }
+
+        private static Entitlement fromJSON(JSONObject json) throws JSONException {
+            JSONArray productIdsJson = json.getJSONArray(KEY_PRODUCT_IDS);
+            List<String> productIds = new ArrayList<>();
+            for(int i = 0; i < productIdsJson.length(); i++) productIds.add(productIdsJson.getString(i));
+
+            return new Entitlement(
+                    json.getString(KEY_PURCHASE_TOKEN),
+                    productIds,
+                    json.has(KEY_PRODUCT_TYPE) ? json.getString(KEY_PRODUCT_TYPE) : null,
+                    json.getBoolean(KEY_IS_ACKNOWLEDGED),
+                    json.getBoolean(KEY_IS_AUTO_RENEWING),
+                    json.getInt(KEY_QUANTITY),
+                    json.getLong(KEY_PURCHASE_TIME));
+        }
+
+        private JSONObject toJSON() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put(KEY_PURCHASE_TOKEN, purchaseToken);
+            json.put(KEY_PRODUCT_IDS, new JSONArray(productIds));
+            if(productType != null) json.put(KEY_PRODUCT_TYPE, productType);
+            json.put(KEY_IS_ACKNOWLEDGED, isAcknowledged);
+            json.put(KEY_IS_AUTO_RENEWING, isAutoRenewing);
+            json.put(KEY_QUANTITY, quantity);
+            json.put(KEY_PURCHASE_TIME, purchaseTime);
+            return json;
+        }
+
+        private WritableMap toMap(String productId, long syncedAt) {
+            WritableMap json = new WritableNativeMap();
+            json.putString("productId", productId);
+            if(productType != null) json.putString("productType", productType);
+            else json.putNull("productType");
+            json.putString("purchaseToken", purchaseToken);
+            json.putBoolean("isAcknowledged", isAcknowledged);
+            json.putBoolean("isAutoRenewing", isAutoRenewing);
+            json.putInt("quantity", quantity);
+            json.putDouble("purchaseTime", purchaseTime);
+            if(syncedAt > 0) json.putDouble("syncedAt", syncedAt);
+            else json.putNull("syncedAt");
+            return json;
+        }
+    }
+
+    private final SharedPreferences preferences;
+    private final Map<String, Entitlement> entitlements = new HashMap<>();
+    private final Map<String, Set<String>> purchaseTokensByProductId = new HashMap<>();
+    // Active purchase tokens of the last full list of each product type synced in this process.
+    private final Map<String, Set<String>> syncedPurchaseTokens = new HashMap<>();
+    private final BillingSdkPurchaseVerifier purchaseVerifier;
+
+    public BillingSdkEntitlementIndex(Context context, BillingSdkPurchaseVerifier purchaseVerifier) {
+        this.purchaseVerifier = purchaseVerifier;
+        this.preferences = context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        load();
+    }
+
+    private synchronized void load() {
+        for(Map.Entry<String, ?> entry: preferences.getAll().entrySet()){
+            if(!entry.getKey().startsWith(ENTITLEMENT_KEY_PREFIX)) continue;
+
+            try {
+                index(Entitlement.fromJSON(new JSONObject((String) entry.getValue())));
+            } catch (JSONException | ClassCastException ignored) {}
+        }
+    }
+
+    private void index(Entitlement entitlement) {
+        unindex(entitlement.purchaseToken);
+        entitlements.put(entitlement.purchaseToken, entitlement);
+
+        for(String productId: entitlement.productIds){
+            Set<String> purchaseTokens = purchaseTokensByProductId.get(productId);
+            if(purchaseTokens == null){
+                purchaseTokens = new HashSet<>();
+                purchaseTokensByProductId.put(productId, purchaseTokens);
+            }
+            purchaseTokens.add(entitlement.purchaseToken);
+        }
+    }
+
+    private boolean unindex(String purchaseToken) {
+        Entitlement entitlement = entitlements.remove(purchaseToken);
+        if(entitlement == null) return false;
+
+        for(String productId: entitlement.productIds){
+            Set<String> purchaseTokens = purchaseTokensByProductId.get(productId);
+            if(purchaseTokens == null) continue;
+            purchaseTokens.remove(purchaseToken);
+            if(purchaseTokens.isEmpty()) purchaseTokensByProductId.remove(productId);
+        }
+        return true;
+    }
+
+    private void put(Entitlement entitlement, SharedPreferences.Editor editor) {
+        index(entitlement);
+        try {
+            editor.putString(ENTITLEMENT_KEY_PREFIX + entitlement.purchaseToken, entitlement.toJSON().toString());
+        } catch (JSONException ignored) {}
+    }
+
+    private void remove(String purchaseToken, SharedPreferences.Editor editor) {
+        if(unindex(purchaseToken)) editor.remove(ENTITLEMENT_KEY_PREFIX + purchaseToken);
+    }
+
+    private static boolean isPurchased(int purchaseState) {
+        return purchaseState == Purchase.PurchaseState.PURCHASED;
+    }
+
+    /**
+     * Applies the purchases added, changed and removed since they were last observed.
+     */
+    public synchronized void apply(BillingSdkPurchaseStateStore.Diff diff) {
+        SharedPreferences.Editor editor = preferences.edit();
+
+        for(BillingSdkPurchaseStateStore.Snapshot snapshot: diff.added){
+            if(isPurchased(snapshot.purchaseState) && isTrusted(snapshot.purchase)) put(Entitlement.fromSnapshot(snapshot), editor);
+        }
+
+        for(BillingSdkPurchaseStateStore.Change change: diff.changed){
+            if(isPurchased(change.current.purchaseState) && isTrusted(change.current.purchase)) put(Entitlement.fromSnapshot(change.current), editor);
+            else remove(change.current.purchase.getPurchaseToken(), editor);
+        }
+
+        for(BillingSdkPurchaseStateStore.Snapshot snapshot: diff.removed) remove(snapshot.purchase.getPurchaseToken(), editor);
+
+        editor.apply();
+    }
+
+    /**
+     * Applies the complete list of active purchases of a product type returned by queryPurchasesAsync.
+     * Unlike the purchase diffs, this also removes the entitlements restored from a previous process
+     * that are not active anymore. Entitlements of unknown product type get the type of the list they
+     * are found in, and are removed once neither list contains them.
+     */
+    public synchronized void replace(String productType, Collection<Purchase> activePurchases) {
+        SharedPreferences.Editor editor = preferences.edit();
+        Set<String> activeTokens = new HashSet<>();
+
+        for(Purchase purchase: activePurchases){
+            if(!isPurchased(purchase.getPurchaseState()) || !isTrusted(purchase)) continue;
+            activeTokens.add(purchase.getPurchaseToken());
+            put(Entitlement.fromPurchase(purchase, productType), editor);
+        }
+
+        syncedPurchaseTokens.put(productType, activeTokens);
+
+        for(Entitlement entitlement: new ArrayList<>(entitlements.values())){
+            if(activeTokens.contains(entitlement.purchaseToken)) continue;
+
+            if(productType.equals(entitlement.productType)
+                    || (entitlement.productType == null && isMissingFromSyncedLists(entitlement.purchaseToken)))
+                remove(entitlement.purchaseToken, editor);
+        }
+
+        editor.putLong(SYNCED_AT_KEY_PREFIX + productType, System.currentTimeMillis());
+        editor.apply();
+    }
+
+    /**
+     * Whether an entitlement of unknown product type, recorded from a purchase update before its product
+     * was queried, is missing from both the in-app and the subscription lists synced in this process.
+     * Until both lists are synced, it may belong to the one not synced yet.
+     */
+    private boolean isMissingFromSyncedLists(String purchaseToken) {
+        for(String productType: new String[]{ BillingClient.ProductType.INAPP, BillingClient.ProductType.SUBS }){
+            Set<String> purchaseTokens = syncedPurchaseTokens.get(productType);
+            if(purchaseTokens == null || purchaseTokens.contains(purchaseToken)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Whether the purchase may grant entitlements: always when verification is disabled, otherwise
+     * only when its signature verifies.
+     */
+    private boolean isTrusted(Purchase purchase) {
+        return !purchaseVerifier.isEnabled() || Boolean.TRUE.equals(purchaseVerifier.verify(purchase));
+    }
+
+    public synchronized boolean isEntitled(String productId) {
+        return purchaseTokensByProductId.containsKey(productId);
+    }
+
+    /**
+     * Returns one entry per entitled product. `syncedAt` is the time the product type was last
+     * synced with Google Play, or null when the entitlement is only known from purchase updates.
+     */
+    public synchronized WritableArray getActiveEntitlements() {
+        WritableArray array = new WritableNativeArray();
+
+        for(Map.Entry<String, Set<String>> entry: purchaseTokensByProductId.entrySet()){
+            Entitlement latest = null;
+            for(String purchaseToken: entry.getValue()){
+                Entitlement entitlement = entitlements.get(purchaseToken);
+                if(entitlement != null && (latest == null || entitlement.purchaseTime > latest.purchaseTime)) latest = entitlement;
+            }
+            if(latest == null) continue;
+
+            long syncedAt = latest.productType == null ? 0 : preferences.getLong(SYNCED_AT_KEY_PREFIX + latest.productType, 0);
+            array.pushMap(latest.toMap(entry.getKey(), syncedAt));
+        }
+
+        return array;
+    }
+}
@@ -4,27 +4,261 @@ import androidx.annotation.Nullable;
 
 import com.facebook.react.bridge.ReactContext;
 import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Emits events to JS, only when JS listens to them. Payloads are created lazily by a PayloadFactory
+ * so that events nobody listens to are never converted. Coalesced events sent within the same frame
+ * with the same key are emitted once, with the payload of the last one. The undelivered events of a
+ * sticky event name are held and replayed once a listener is added.
+ */
 public class BillingSdkEventEmitter {
+    public static final long COALESCING_WINDOW = 16;
+    // Undelivered sticky events held at most, the oldest is dropped first.
+    public static final int MAX_UNDELIVERED = 64;
+
+    public interface PayloadFactory {
+        @Nullable WritableMap create();
+    }
+
+    private static class PendingEvent {
+        private final String eventName;
+        private final PayloadFactory payloadFactory;
+
+        private PendingEvent(String eventName, PayloadFactory payloadFactory) {
+            this.eventName = eventName;
+            this.payloadFactory = payloadFactory;
+        }
+    }
+
     private DeviceEventManagerModule.RCTDeviceEventEmitter eventEmitter = null;
-    private ReactContext context;
+    private @Nullable ReactContext context;
 
-    private DeviceEventManagerModule.RCTDeviceEventEmitter getEventEmitter (){
-      if(this.eventEmitter == null)
+    private final ScheduledExecutorService scheduler = BillingSdk.newScheduler("BillingSdkEvents");
+    private final Map<String, Integer> listenerCounts = new HashMap<>();
+    private final Set<String> stickyEventNames = new HashSet<>();
+    private final Map<String, PendingEvent> coalescedEvents = new LinkedHashMap<>();
+    private final Map<String, PendingEvent> undeliveredEvents = new LinkedHashMap<>();
+    private boolean flushScheduled = false;
+
+    private long emitted = 0;
+    private long dropped = 0;
+    private long coalesced = 0;
+    private long replayed = 0;
+
+    private synchronized @Nullable DeviceEventManagerModule.RCTDeviceEventEmitter getEventEmitter (){
+      if(this.eventEmitter == null && this.context != null)
         this.eventEmitter = context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class);
 
       return this.eventEmitter;
     }
 
+    // The context may be detached between counting the event as emitted and emitting it.
+    private void emit(String eventName, PayloadFactory payloadFactory){
+      DeviceEventManagerModule.RCTDeviceEventEmitter eventEmitter = this.getEventEmitter();
+      if(eventEmitter != null) eventEmitter.emit(eventName, payloadFactory.create());
+    }
+
     public BillingSdkEventEmitter(ReactContext context){
       this.context = context;
     }
 
-    public void sendEvent(String eventName, @Nullable WritableMap params){
-        this.getEventEmitter().emit(eventName, params);
+    /**
+     * Moves the emitter to another React context, or detaches it when null. The listeners of the
+     * previous JS runtime are gone with it, its undelivered sticky events are kept for the next one.
+     */
+    public synchronized void setContext(@Nullable ReactContext context){
+        this.context = context;
+        this.eventEmitter = null;
+        listenerCounts.clear();
+    }
+
+    /**
+     * Holds the undelivered events of this name until a listener is added, instead of dropping them.
+     */
+    public synchronized void setSticky(String eventName){
+        stickyEventNames.add(eventName);
+    }
+
+    public void sendEvent(String eventName, @Nullable final WritableMap params){
+        sendEvent(eventName, eventName, new PayloadFactory() {
+            @Override
+            public @Nullable WritableMap create() {
+                return params;
+            }
+        });
+    }
+
+    public void sendEvent(String eventName, PayloadFactory payloadFactory){
+        sendEvent(eventName, eventName, payloadFactory);
+    }
+
+    /**
+     * Emits the event. An undelivered sticky event replaces the one held with the same key.
+     */
+    public void sendEvent(String eventName, String key, PayloadFactory payloadFactory){
+        synchronized (this) {
+            if(getListenerCount(eventName) == 0){
+                if(!stickyEventNames.contains(eventName)){
+                    dropped++;
+                    return;
+                }
+
+                undeliveredEvents.put(key, new PendingEvent(eventName, payloadFactory));
+                Iterator<String> iterator = undeliveredEvents.keySet().iterator();
+                while(undeliveredEvents.size() > MAX_UNDELIVERED && iterator.hasNext()){
+                    iterator.next();
+                    iterator.remove();
+                    dropped++;
+                }
+                return;
+            }
+            emitted++;
+        }
+
+        emit(eventName, payloadFactory);
+    }
+
+    /**
+     * Emits the event at the end of the current frame. An event sent with the same key before that
+     * replaces this one.
+     */
+    public void sendCoalescedEvent(String eventName, String key, PayloadFactory payloadFactory){
+        synchronized (this) {
+            if(coalescedEvents.put(key, new PendingEvent(eventName, payloadFactory)) != null) coalesced++;
+            if(flushScheduled) return;
+            flushScheduled = true;
+        }
+
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, COALESCING_WINDOW, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush(){
+        Map<String, PendingEvent> events;
+        synchronized (this) {
+            flushScheduled = false;
+            events = new LinkedHashMap<>(coalescedEvents);
+            coalescedEvents.clear();
+        }
+
+        for(Map.Entry<String, PendingEvent> event: events.entrySet()){
+            sendEvent(event.getValue().eventName, event.getKey(), event.getValue().payloadFactory);
+        }
+    }
+
+    /**
+     * Forgets the undelivered events of this name, e.g. a disconnection that is not current anymore.
+     */
+    public synchronized void discardUndelivered(String eventName){
+        Iterator<PendingEvent> iterator = undeliveredEvents.values().iterator();
+        while(iterator.hasNext()){
+            if(iterator.next().eventName.equals(eventName)) iterator.remove();
+        }
     }
 
-    public void addListener(String eventName) {}
-    public void removeListeners(Integer count) {}
+    private int getListenerCount(String eventName){
+        Integer count = listenerCounts.get(eventName);
+        return count == null ? 0 : count;
+    }
+
+    private void updateListenerCount(String eventName, int delta){
+        int count = Math.max(0, getListenerCount(eventName) + delta);
+        if(count == 0) listenerCounts.remove(eventName);
+        else listenerCounts.put(eventName, count);
+    }
+
+    public void addListener(final String eventName) {
+        synchronized (this) {
+            updateListenerCount(eventName, 1);
+        }
+
+        // Replayed on the next frame, once the JS subscription that triggered this call is registered.
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                replay(eventName);
+            }
+        }, COALESCING_WINDOW, TimeUnit.MILLISECONDS);
+    }
+
+    private void replay(String eventName){
+        List<PendingEvent> events = new ArrayList<>();
+
+        synchronized (this) {
+            if(getListenerCount(eventName) == 0) return;
+
+            Iterator<PendingEvent> iterator = undeliveredEvents.values().iterator();
+            while(iterator.hasNext()){
+                PendingEvent event = iterator.next();
+                if(!event.eventName.equals(eventName)) continue;
+                events.add(event);
+                iterator.remove();
+            }
+            replayed += events.size();
+            emitted += events.size();
+        }
+
+        for(PendingEvent event: events) emit(eventName, event.payloadFactory);
+    }
+
+    /**
+     * Removes a listener of a known event. JS calls it once per subscription it removes.
+     */
+    public synchronized void removeEventListener(String eventName) {
+        updateListenerCount(eventName, -1);
+    }
+
+    /**
+     * Called by NativeEventEmitter for every removed subscription, without its event. Listener counts
+     * are only decremented by removeEventListener, since the event cannot be told from here: only the
+     * removers returned by the set...Listener methods are supported, a subscription added directly on
+     * a NativeEventEmitter keeps its event emitted after it is removed.
+     */
+    public synchronized void removeListeners(int count) {}
+
+    /**
+     * Forgets every listener, called when the JS bundle is (re)loaded: the subscriptions of the previous
+     * bundle are gone even when the React context is kept, e.g. on a fast refresh.
+     */
+    public synchronized void resetListeners() {
+        listenerCounts.clear();
+    }
+
+    public synchronized WritableMap toMap() {
+        WritableMap listeners = new WritableNativeMap();
+        for(Map.Entry<String, Integer> entry: listenerCounts.entrySet()) listeners.putInt(entry.getKey(), entry.getValue());
+
+        WritableMap json = new WritableNativeMap();
+        json.putMap("listeners", listeners);
+        json.putDouble("emitted", emitted);
+        json.putDouble("dropped", dropped);
+        json.putDouble("coalesced", coalesced);
+        json.putDouble("replayed", replayed);
+        json.putInt("undelivered", undeliveredEvents.size());
+        return json;
+    }
+
+    /**
+     * Stops the coalescing thread. Events sent afterwards are not emitted.
+     */
+    public void close(){
+        scheduler.shutdownNow();
+    }
 }
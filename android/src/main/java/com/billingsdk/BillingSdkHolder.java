@@ -0,0 +1,78 @@
+package com.billingsdk;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process wide BillingSdk shared by the modules of every React context. A reload destroys the module
+ * of the previous context before creating the next one, so the SDK is only shut down SHUTDOWN_DELAY
+ * after its last module is released: a module created in the meantime gets the same SDK, with its
+ * billing connection, product details and purchase state still warm.
+ */
+public class BillingSdkHolder {
+    public static final long SHUTDOWN_DELAY = 10 * 1000;
+
+    // Daemon thread, it lives as long as the process and must not keep it alive.
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "BillingSdkHolder");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private static @Nullable BillingSdk billingSdk;
+    private static int references = 0;
+    private static @Nullable ScheduledFuture<?> scheduledShutdown;
+
+    /**
+     * Returns the shared SDK attached to the context, creating it if needed. Every call must be
+     * balanced by a call to release.
+     */
+    public static synchronized BillingSdk acquire(ReactApplicationContext context) {
+        if(scheduledShutdown != null){
+            scheduledShutdown.cancel(false);
+            scheduledShutdown = null;
+        }
+
+        if(billingSdk == null) billingSdk = new BillingSdk(context, new BillingSdkEventEmitter(context));
+        else billingSdk.attach(context);
+
+        references++;
+        return billingSdk;
+    }
+
+    /**
+     * Detaches the SDK from the destroyed context, and schedules its shutdown when no other context uses it.
+     */
+    public static synchronized void release(final BillingSdk released, ReactApplicationContext context) {
+        if(released != billingSdk || references == 0) return;
+
+        released.detach(context);
+        if(--references > 0) return;
+
+        scheduledShutdown = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                shutdown(released);
+            }
+        }, SHUTDOWN_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    private static void shutdown(BillingSdk released) {
+        synchronized (BillingSdkHolder.class) {
+            if(released != billingSdk || references > 0) return;
+            billingSdk = null;
+            scheduledShutdown = null;
+        }
+
+        released.shutdown();
+    }
+}
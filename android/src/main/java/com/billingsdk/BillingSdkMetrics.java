@@ -0,0 +1,145 @@
+package com.billingsdk;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.android.billingclient.api.BillingResult;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeMap;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latency and outcome metrics of the Google Play Billing calls and of the payload conversions.
+ * Each operation keeps the durations of its last SAMPLE_SIZE calls to compute percentiles,
+ * along with totals and a counter per response code.
+ */
+public class BillingSdkMetrics {
+    public static final String START_CONNECTION = "startConnection";
+    public static final String QUERY_PRODUCT_DETAILS = "queryProductDetails";
+    public static final String QUERY_PURCHASES = "queryPurchases";
+    public static final String ACKNOWLEDGE_PURCHASE = "acknowledgePurchase";
+    public static final String CONSUME = "consume";
+    public static final String LAUNCH_BILLING_FLOW = "launchBillingFlow";
+    // From the launch of a billing flow to its purchase update.
+    public static final String PURCHASE_FLOW = "purchaseFlow";
+    public static final String CONVERT_PRODUCT_DETAILS = "convertProductDetails";
+    public static final String CONVERT_PURCHASES = "convertPurchases";
+
+    private static final int SAMPLE_SIZE = 256;
+
+    private static class Histogram {
+        private final double[] samples = new double[SAMPLE_SIZE];
+        private final Map<Integer, Long> responseCodes = new TreeMap<>();
+        private int sampleCount = 0;
+        private long count = 0;
+        private double total = 0;
+        private double max = 0;
+
+        private void record(double durationMs, @Nullable BillingResult billingResult) {
+            samples[(int) (count % SAMPLE_SIZE)] = durationMs;
+            sampleCount = Math.min(sampleCount + 1, SAMPLE_SIZE);
+            count++;
+            total += durationMs;
+            max = Math.max(max, durationMs);
+
+            if(billingResult != null){
+                Long responseCodeCount = responseCodes.get(billingResult.getResponseCode());
+                responseCodes.put(billingResult.getResponseCode(), responseCodeCount == null ? 1 : responseCodeCount + 1);
+            }
+        }
+
+        private WritableMap toMap() {
+            double[] sorted = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(sorted);
+
+            WritableMap json = new WritableNativeMap();
+            json.putDouble("count", count);
+            json.putDouble("mean", count == 0 ? 0 : total / count);
+            json.putDouble("max", max);
+            json.putDouble("p50", getPercentile(sorted, 0.50));
+            json.putDouble("p95", getPercentile(sorted, 0.95));
+            json.putDouble("p99", getPercentile(sorted, 0.99));
+
+            WritableMap codes = new WritableNativeMap();
+            for(Map.Entry<Integer, Long> entry: responseCodes.entrySet()) codes.putDouble(String.valueOf(entry.getKey()), entry.getValue());
+            json.putMap("responseCodes", codes);
+            return json;
+        }
+
+        private static double getPercentile(double[] sorted, double percentile) {
+            if(sorted.length == 0) return 0;
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+    }
+
+    private final Map<String, Histogram> histograms = new HashMap<>();
+    private long connectedAt = -1;
+    private long connectedTime = 0;
+    private long connectionCount = 0;
+    private long disconnectionCount = 0;
+
+    /**
+     * Start time of a measured call, to pass to record once it completes.
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    public synchronized void record(String operation, long startNanos, @Nullable BillingResult billingResult) {
+        Histogram histogram = histograms.get(operation);
+        if(histogram == null){
+            histogram = new Histogram();
+            histograms.put(operation, histogram);
+        }
+        histogram.record((System.nanoTime() - startNanos) / 1e6, billingResult);
+    }
+
+    public void record(String operation, long startNanos) {
+        record(operation, startNanos, null);
+    }
+
+    public synchronized void onConnected() {
+        connectionCount++;
+        if(connectedAt == -1) connectedAt = SystemClock.elapsedRealtime();
+    }
+
+    public synchronized void onDisconnected() {
+        if(connectedAt == -1) return;
+
+        disconnectionCount++;
+        connectedTime += SystemClock.elapsedRealtime() - connectedAt;
+        connectedAt = -1;
+    }
+
+    public synchronized void reset() {
+        histograms.clear();
+        connectedTime = 0;
+        connectionCount = 0;
+        disconnectionCount = 0;
+        if(connectedAt != -1) connectedAt = SystemClock.elapsedRealtime();
+    }
+
+    public synchronized WritableMap toMap() {
+        WritableMap operations = new WritableNativeMap();
+        for(Map.Entry<String, Histogram> entry: histograms.entrySet()) operations.putMap(entry.getKey(), entry.getValue().toMap());
+
+        long now = SystemClock.elapsedRealtime();
+        WritableMap connection = new WritableNativeMap();
+        connection.putBoolean("connected", connectedAt != -1);
+        connection.putDouble("currentUptime", connectedAt == -1 ? 0 : now - connectedAt);
+        connection.putDouble("totalUptime", connectedTime + (connectedAt == -1 ? 0 : now - connectedAt));
+        connection.putDouble("connections", connectionCount);
+        connection.putDouble("disconnections", disconnectionCount);
+
+        WritableMap json = new WritableNativeMap();
+        json.putMap("operations", operations);
+        json.putMap("connection", connection);
+        return json;
+    }
+}
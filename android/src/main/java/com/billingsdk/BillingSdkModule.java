@@ -5,23 +5,37 @@ import androidx.annotation.Nullable;
 
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
-import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.module.annotations.ReactModule;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 @ReactModule(name = BillingSdkModule.NAME)
-public class BillingSdkModule extends ReactContextBaseJavaModule {
+public class BillingSdkModule extends BillingSdkSpec {
   public static final String NAME = "BillingSdk";
   private BillingSdk billingSdk;
   private BillingSdkEventEmitter eventEmitter;
 
   public BillingSdkModule(ReactApplicationContext context) {
     super(context);
-    this.eventEmitter = new BillingSdkEventEmitter(context);
-    this.billingSdk = new BillingSdk(context, this.eventEmitter);
+    // Shared with the modules of previous and next React contexts, see BillingSdkHolder.
+    this.billingSdk = BillingSdkHolder.acquire(context);
+    this.eventEmitter = this.billingSdk.getEventEmitter();
+  }
+
+  /**
+   * Releases the shared SDK when the React context is destroyed, e.g. on reload.
+   */
+  @Override
+  public void invalidate() {
+    super.invalidate();
+    BillingSdkHolder.release(billingSdk, getReactApplicationContext());
   }
 
   @Override
@@ -30,6 +44,14 @@ public class BillingSdkModule extends ReactContextBaseJavaModule {
     return NAME;
   }
 
+  /**
+   * Starts loading products and purchases before JS asks for them, see BillingSdkPackage.setPrefetchProducts.
+   */
+  void prefetch(Map<String, List<String>> productIdsByType, boolean includePurchases){
+    if(productIdsByType.isEmpty() && !includePurchases) return;
+    billingSdk.prefetch(productIdsByType, includePurchases);
+  }
+
   @ReactMethod
   public void startConnection (Promise promise){
     billingSdk.startConnection(promise);
@@ -45,15 +67,244 @@ public class BillingSdkModule extends ReactContextBaseJavaModule {
     billingSdk.getConnectionState(promise);
   }
 
-  @ReactMethod
-  public void queryProductDetails(ReadableArray productIds, String productType, Promise promise) {
-    ArrayList<String> productIdsList = new ArrayList<>();
+  /**
+   * Synchronous variant of getConnectionState, read without a round trip on the new architecture.
+   */
+  @ReactMethod(isBlockingSynchronousMethod = true)
+  public double getConnectionStateSync(){
+    return billingSdk.getConnectionStateSync();
+  }
 
-    for(int i=0; i<productIds.size(); i++){
-      productIdsList.add(productIds.getString(i));
+  private static ArrayList<String> toStringList(ReadableArray array){
+    ArrayList<String> list = new ArrayList<>();
+
+    for(int i=0; i<array.size(); i++){
+      list.add(array.getString(i));
+    }
+
+    return list;
+  }
+
+  private static BillingSdkProjection getProjection(@Nullable ReadableMap options){
+    if(options == null || !options.hasKey("fields") || options.isNull("fields")){
+      return BillingSdkProjection.ALL;
     }
 
-    billingSdk.queryProductDetails(productIdsList, productType, promise);
+    return BillingSdkProjection.fromFields(toStringList(options.getArray("fields")));
+  }
+
+  private static int getPageSize(@Nullable ReadableMap options){
+    if(options == null || !options.hasKey("pageSize")) return BillingSdkResultCursors.DEFAULT_PAGE_SIZE;
+    return options.getInt("pageSize");
+  }
+
+  /**
+   * @param productIds Product ids to query.
+   * @param productType The type of the products (e.g., inapp or subs).
+   * @param options { fields?: string[] } optional projection, only the listed fields (dotted paths for
+   *                nested fields, e.g. "subscriptionOfferDetails.offerToken") are converted and resolved.
+   * @param promise Promise to resolve with the list of product details.
+   */
+  @ReactMethod
+  public void queryProductDetails(ReadableArray productIds, String productType, @Nullable ReadableMap options, Promise promise) {
+    billingSdk.queryProductDetails(toStringList(productIds), productType, getProjection(options), promise);
+  }
+
+  /**
+   * Synchronously returns the details of the requested products that were already queried, from the
+   * product details store or the product details cache, without querying Google Play.
+   * Products that are not available are omitted.
+   *
+   * @param productIds Product ids to look up.
+   * @param productType The type of the products (e.g., inapp or subs).
+   */
+  @ReactMethod(isBlockingSynchronousMethod = true)
+  public WritableArray getCachedProductDetails(ReadableArray productIds, String productType){
+    return billingSdk.getCachedProductDetails(toStringList(productIds), productType);
+  }
+
+  /**
+   * Synchronously returns whether the user is entitled to the product, i.e. owns a purchased (not
+   * pending) purchase of it, from the local entitlement index. The index is updated by purchase
+   * updates and purchase queries and persisted across launches.
+   *
+   * @param productId Product id to check.
+   */
+  @ReactMethod(isBlockingSynchronousMethod = true)
+  public boolean isEntitled(String productId){
+    return billingSdk.isEntitled(productId);
+  }
+
+  /**
+   * Synchronously returns one entry per entitled product from the local entitlement index.
+   */
+  @ReactMethod(isBlockingSynchronousMethod = true)
+  public WritableArray getActiveEntitlements(){
+    return billingSdk.getActiveEntitlements();
+  }
+
+  /**
+   * Enables the disk backed product details cache. Cached products younger than `ttl` are
+   * resolved immediately by queryProductDetails and refreshed in the background once they are
+   * older than `revalidateAfter`. Price changes are reported with the PRODUCT_DETAILS_UPDATED event.
+   *
+   * @param options { enabled: boolean, ttl?: number, revalidateAfter?: number } durations in milliseconds.
+   * @param promise Promise resolved once the options are applied.
+   */
+  @ReactMethod
+  public void configureProductDetailsCache(ReadableMap options, Promise promise){
+    boolean enabled = options.hasKey("enabled") && options.getBoolean("enabled");
+    long ttl = options.hasKey("ttl") ? (long) options.getDouble("ttl") : BillingSdkProductCache.DEFAULT_TTL;
+    long revalidateAfter = options.hasKey("revalidateAfter")
+      ? (long) options.getDouble("revalidateAfter")
+      : BillingSdkProductCache.DEFAULT_REVALIDATE_AFTER;
+
+    billingSdk.configureProductDetailsCache(enabled, ttl, revalidateAfter, promise);
+  }
+
+  @ReactMethod
+  public void clearProductDetailsCache(Promise promise){
+    billingSdk.clearProductDetailsCache(promise);
+  }
+
+  /**
+   * Sets how long queryProductDetails waits to merge concurrent requests into a single
+   * Google Play query per product type. Product ids already in flight are never queried twice.
+   *
+   * @param options { window: number } batching window in milliseconds.
+   * @param promise Promise resolved once the options are applied.
+   */
+  @ReactMethod
+  public void configureProductDetailsBatching(ReadableMap options, Promise promise){
+    long window = options.hasKey("window")
+      ? (long) options.getDouble("window")
+      : BillingSdkProductDetailsBatcher.DEFAULT_WINDOW;
+
+    billingSdk.configureProductDetailsBatching(window, promise);
+  }
+
+  /**
+   * Bounds the in memory store of queried products used by launchBillingFlow. Least recently used
+   * products are evicted once `maxSize` is reached and expire after `ttl`; launchBillingFlow queries
+   * an evicted product again instead of rejecting.
+   *
+   * @param options { maxSize?: number, ttl?: number } ttl in milliseconds.
+   * @param promise Promise resolved once the options are applied.
+   */
+  @ReactMethod
+  public void configureProductDetailsStore(ReadableMap options, Promise promise){
+    int maxSize = options.hasKey("maxSize") ? options.getInt("maxSize") : BillingSdkProductDetailsStore.DEFAULT_MAX_SIZE;
+    long ttl = options.hasKey("ttl") ? (long) options.getDouble("ttl") : BillingSdkProductDetailsStore.DEFAULT_TTL;
+
+    billingSdk.configureProductDetailsStore(maxSize, ttl, promise);
+  }
+
+  @ReactMethod
+  public void getProductDetailsStoreStats(Promise promise){
+    billingSdk.getProductDetailsStoreStats(promise);
+  }
+
+  /**
+   * Resolves the latency of every Google Play Billing call and payload conversion made so far
+   * (count, mean, max, p50, p95 and p99 in milliseconds, counts per response code) along with
+   * the connection uptime stats.
+   */
+  @ReactMethod
+  public void getMetrics(Promise promise){
+    billingSdk.getMetrics(promise);
+  }
+
+  @ReactMethod
+  public void resetMetrics(Promise promise){
+    billingSdk.resetMetrics(promise);
+  }
+
+  /**
+   * Enables the on device verification of purchase signatures. Purchases resolved or emitted
+   * afterwards carry `verified: boolean`, telling whether their original JSON was signed by Google Play
+   * with the key of the app. Purchases that fail verification do not grant entitlements: they are not
+   * reported by isEntitled and getActiveEntitlements. Passing a null key disables verification.
+   *
+   * @param options { publicKey: string | null } Base64 encoded RSA public key from the Play Console.
+   * @param promise Promise resolved once the key is set, rejected with DEVELOPER_ERROR if it is invalid.
+   */
+  @ReactMethod
+  public void configurePurchaseVerification(ReadableMap options, Promise promise){
+    String publicKey = options.hasKey("publicKey") && !options.isNull("publicKey") ? options.getString("publicKey") : null;
+    billingSdk.configurePurchaseVerification(publicKey, promise);
+  }
+
+  /**
+   * Sizes the background executor that converts Google Play results and resolves promises off the
+   * thread Google Play calls back on. With more than one thread, events may be emitted out of order.
+   *
+   * @param options { threads?: number, queueSize?: number } 1 thread and 128 queued tasks by default.
+   * @param promise Promise resolved once the options are applied.
+   */
+  @ReactMethod
+  public void configureCallbackExecutor(ReadableMap options, Promise promise){
+    int threads = options.hasKey("threads") ? options.getInt("threads") : BillingSdkCallbackExecutor.DEFAULT_THREADS;
+    int queueSize = options.hasKey("queueSize") ? options.getInt("queueSize") : BillingSdkCallbackExecutor.DEFAULT_QUEUE_SIZE;
+
+    billingSdk.configureCallbackExecutor(threads, queueSize, promise);
+  }
+
+  /**
+   * Configures the retry policy of the product details and purchase queries: transient failures are
+   * retried with jittered exponential backoff, a circuit breaker fails calls fast while Google Play keeps
+   * failing, and slow calls can be hedged. Disabled by default.
+   *
+   * @param options { enabled: boolean, maxAttempts?: number, baseDelay?: number, maxDelay?: number,
+   *   failureThreshold?: number, openDuration?: number, hedgeDelay?: number } Delays are in milliseconds.
+   * @param promise Promise resolved once the options are applied.
+   */
+  @ReactMethod
+  public void configureRetryPolicy(ReadableMap options, Promise promise){
+    boolean enabled = options.hasKey("enabled") && options.getBoolean("enabled");
+    int maxAttempts = options.hasKey("maxAttempts") ? options.getInt("maxAttempts") : BillingSdkRetryPolicy.DEFAULT_MAX_ATTEMPTS;
+    long baseDelay = options.hasKey("baseDelay") ? (long) options.getDouble("baseDelay") : BillingSdkRetryPolicy.DEFAULT_BASE_DELAY;
+    long maxDelay = options.hasKey("maxDelay") ? (long) options.getDouble("maxDelay") : BillingSdkRetryPolicy.DEFAULT_MAX_DELAY;
+    int failureThreshold = options.hasKey("failureThreshold") ? options.getInt("failureThreshold") : BillingSdkRetryPolicy.DEFAULT_FAILURE_THRESHOLD;
+    long openDuration = options.hasKey("openDuration") ? (long) options.getDouble("openDuration") : BillingSdkRetryPolicy.DEFAULT_OPEN_DURATION;
+    long hedgeDelay = options.hasKey("hedgeDelay") ? (long) options.getDouble("hedgeDelay") : BillingSdkRetryPolicy.DEFAULT_HEDGE_DELAY;
+
+    billingSdk.configureRetryPolicy(enabled, maxAttempts, baseDelay, maxDelay, failureThreshold, openDuration, hedgeDelay, promise);
+  }
+
+  /**
+   * Same as queryProductDetails, but resolves { etag, unchanged, items } and leaves `items` null when
+   * the result matches the one identified by `etag`. Always queries Google Play, bypassing the product cache.
+   */
+  @ReactMethod
+  public void queryProductDetailsIfChanged(ReadableArray productIds, String productType, @Nullable String etag, @Nullable ReadableMap options, Promise promise) {
+    billingSdk.queryProductDetailsIfChanged(toStringList(productIds), productType, etag, getProjection(options), promise);
+  }
+
+  /**
+   * Same as queryProductDetails, but resolves { cursor, items, total, hasMore } with only the first
+   * page of products. The next pages are converted and resolved by fetchPage.
+   *
+   * @param options { pageSize?: number, fields?: string[] }
+   */
+  @ReactMethod
+  public void queryProductDetailsPaged(ReadableArray productIds, String productType, @Nullable ReadableMap options, Promise promise) {
+    billingSdk.queryProductDetailsPaged(toStringList(productIds), productType, getProjection(options), getPageSize(options), promise);
+  }
+
+  /**
+   * Resolves the offer of a queried subscription to show on a paywall, from offers indexed when the
+   * subscription was queried, or null when no offer matches.
+   *
+   * @param productId The subscription.
+   * @param strategy "cheapest" (lowest price over the first year), "freeTrial" (cheapest offer with a
+   * free trial), "basePlan" (base plan without offer) or "tag" (cheapest offer with `options.tag`).
+   * @param options { tag?: string, basePlanId?: string } basePlanId limits the offers to one base plan.
+   * @param promise Promise resolved with { offerToken, basePlanId, offerId, offerTags, monthlyPriceMicros,
+   * firstYearPriceMicros, priceCurrencyCode, freeTrialDays } or null.
+   */
+  @ReactMethod
+  public void resolveOffer(String productId, String strategy, @Nullable ReadableMap options, Promise promise){
+    billingSdk.resolveOffer(productId, strategy, getOptionalString(options, "tag"), getOptionalString(options, "basePlanId"), promise);
   }
 
   @ReactMethod
@@ -61,12 +312,70 @@ public class BillingSdkModule extends ReactContextBaseJavaModule {
     String productId,
     @Nullable String offerToken,
     @Nullable String oldPurchaseToken,
-    int subscriptionReplacementMode,
+    double subscriptionReplacementMode,
     @Nullable String obfuscatedAccountId,
     @Nullable String obfuscatedProfileId,
     Promise promise
   ) {
-    billingSdk.launchBillingFlow(productId, offerToken, oldPurchaseToken, subscriptionReplacementMode, obfuscatedAccountId, obfuscatedProfileId, promise);
+    billingSdk.launchBillingFlow(productId, offerToken, oldPurchaseToken, (int) subscriptionReplacementMode, obfuscatedAccountId, obfuscatedProfileId, promise);
+  }
+
+  /**
+   * Launches a single billing flow for several products bought together, e.g. a subscription with
+   * add-ons. Every product must have been queried before.
+   *
+   * @param products [{ productId: string, offerToken?: string }] offerToken is required for subscriptions.
+   * @param options { oldPurchaseToken?: string, subscriptionReplacementMode?: number, obfuscatedAccountId?: string, obfuscatedProfileId?: string }
+   * @param promise Promise resolved once the billing flow is launched, rejected with E_INVALID_OFFER
+   * when an offer token is missing or does not belong to its subscription.
+   */
+  @ReactMethod
+  public void launchBundleBillingFlow(ReadableArray products, @Nullable ReadableMap options, Promise promise){
+    List<String> productIds = new ArrayList<>();
+    List<String> offerTokens = new ArrayList<>();
+
+    for(int i=0; i<products.size(); i++){
+      ReadableMap product = products.getMap(i);
+      productIds.add(product.getString("productId"));
+      offerTokens.add(product.hasKey("offerToken") && !product.isNull("offerToken") ? product.getString("offerToken") : null);
+    }
+
+    String oldPurchaseToken = getOptionalString(options, "oldPurchaseToken");
+    int subscriptionReplacementMode = options != null && options.hasKey("subscriptionReplacementMode") ? options.getInt("subscriptionReplacementMode") : 0;
+
+    billingSdk.launchBillingFlow(productIds, offerTokens, oldPurchaseToken, subscriptionReplacementMode, getOptionalString(options, "obfuscatedAccountId"), getOptionalString(options, "obfuscatedProfileId"), 0, promise);
+  }
+
+  /**
+   * Launches the billing flow of a queried product and waits for its outcome, instead of resolving
+   * once the flow is shown. The purchase is still reported by PURCHASE_UPDATED as well.
+   *
+   * @param productId The product to buy.
+   * @param options { offerToken?: string, oldPurchaseToken?: string, subscriptionReplacementMode?: number,
+   * obfuscatedAccountId?: string, obfuscatedProfileId?: string, timeout?: number } timeout in
+   * milliseconds, 5 minutes by default.
+   * @param promise Promise resolved with the purchase of the product, which may be pending, or
+   * rejected with the response code of the flow (e.g. USER_CANCELED) or E_PURCHASE_TIMEOUT.
+   */
+  @ReactMethod
+  public void launchBillingFlowForResult(String productId, @Nullable ReadableMap options, Promise promise){
+    int subscriptionReplacementMode = options != null && options.hasKey("subscriptionReplacementMode") ? options.getInt("subscriptionReplacementMode") : 0;
+    long timeout = options != null && options.hasKey("timeout") ? (long) options.getDouble("timeout") : BillingSdkPurchaseFlows.DEFAULT_TIMEOUT;
+
+    billingSdk.launchBillingFlow(
+      Collections.singletonList(productId),
+      Collections.singletonList(getOptionalString(options, "offerToken")),
+      getOptionalString(options, "oldPurchaseToken"),
+      subscriptionReplacementMode,
+      getOptionalString(options, "obfuscatedAccountId"),
+      getOptionalString(options, "obfuscatedProfileId"),
+      Math.max(1, timeout),
+      promise);
+  }
+
+  private static @Nullable String getOptionalString(@Nullable ReadableMap options, String key){
+    if(options == null || !options.hasKey(key) || options.isNull(key)) return null;
+    return options.getString(key);
   }
 
   @ReactMethod
@@ -74,6 +383,43 @@ public class BillingSdkModule extends ReactContextBaseJavaModule {
     billingSdk.acknowledgePurchase(purchaseToken, promise);
   }
 
+  private static int getConcurrency(@Nullable ReadableMap options){
+    if(options == null || !options.hasKey("concurrency")) return BillingSdkTokenOperationRunner.DEFAULT_CONCURRENCY;
+    return options.getInt("concurrency");
+  }
+
+  /**
+   * Acknowledges several purchases with a bounded number of concurrent Google Play calls.
+   * Tokens already being acknowledged are not acknowledged twice.
+   *
+   * @param purchaseTokens Tokens of the purchases to acknowledge.
+   * @param options { concurrency?: number } maximum number of concurrent calls, 4 by default.
+   * @param promise Promise resolved with { [purchaseToken]: { ok, responseCode, debugMessage } }.
+   */
+  @ReactMethod
+  public void acknowledgePurchases(ReadableArray purchaseTokens, @Nullable ReadableMap options, Promise promise){
+    billingSdk.acknowledgePurchases(toStringList(purchaseTokens), getConcurrency(options), promise);
+  }
+
+  /**
+   * Enables the persistent queue of acknowledge and consume operations. Operations failing with a
+   * transient error, or interrupted by the app being killed, are retried in the background with
+   * exponential backoff when the connection is established and when the app resumes. Retry outcomes
+   * are emitted as PENDING_OPERATION_RESULT events. The enabled state is persisted.
+   *
+   * @param options { enabled: boolean, maxAttempts?: number, baseDelay?: number, maxDelay?: number } delays in milliseconds.
+   * @param promise Promise resolved once the options are applied.
+   */
+  @ReactMethod
+  public void configurePendingOperations(ReadableMap options, Promise promise){
+    boolean enabled = options.hasKey("enabled") && options.getBoolean("enabled");
+    int maxAttempts = options.hasKey("maxAttempts") ? options.getInt("maxAttempts") : BillingSdkPendingOperationQueue.DEFAULT_MAX_ATTEMPTS;
+    long baseDelay = options.hasKey("baseDelay") ? (long) options.getDouble("baseDelay") : BillingSdkPendingOperationQueue.DEFAULT_BASE_DELAY;
+    long maxDelay = options.hasKey("maxDelay") ? (long) options.getDouble("maxDelay") : BillingSdkPendingOperationQueue.DEFAULT_MAX_DELAY;
+
+    billingSdk.configurePendingOperations(enabled, maxAttempts, baseDelay, maxDelay, promise);
+  }
+
   /**
    * Queries and returns only the currently active purchases (owned by the user).
    * Note: This does NOT return purchase history or consumed/expired purchases.
@@ -89,12 +435,72 @@ public class BillingSdkModule extends ReactContextBaseJavaModule {
    */
   @ReactMethod
   public void queryPurchaseHistory(String productType, Promise promise){
-    billingSdk.queryPurchases(productType,promise);
+    billingSdk.queryPurchases(productType, BillingSdkProjection.ALL, promise);
   }
 
+  /**
+   * Queries the local purchase ledger, which records every purchase seen by the SDK including the
+   * consumed and expired ones that Google Play cannot return anymore. Resolves the first page of
+   * { cursor, items, total, hasMore }, most recent purchase first; the next pages are resolved by fetchPage.
+   *
+   * @param options { productId?: string, purchaseToken?: string, startTime?: number, endTime?: number, pageSize?: number }
+   * times are purchase times in milliseconds, inclusive.
+   * @param promise Promise to resolve with the first page of ledger records.
+   */
+  @ReactMethod
+  public void queryPurchaseLedger(@Nullable ReadableMap options, Promise promise){
+    String productId = options != null && options.hasKey("productId") ? options.getString("productId") : null;
+    String purchaseToken = options != null && options.hasKey("purchaseToken") ? options.getString("purchaseToken") : null;
+    long startTime = options != null && options.hasKey("startTime") ? (long) options.getDouble("startTime") : 0;
+    long endTime = options != null && options.hasKey("endTime") ? (long) options.getDouble("endTime") : Long.MAX_VALUE;
+
+    billingSdk.queryPurchaseLedger(productId, purchaseToken, startTime, endTime, getPageSize(options), promise);
+  }
+
+  /**
+   * @param productType The type of product to query (e.g., inapp or subs).
+   * @param options { fields?: string[] } optional projection, only the listed fields are converted and resolved.
+   * @param promise Promise to resolve with the list of active purchases.
+   */
+  @ReactMethod
+  public void queryPurchases(String productType, @Nullable ReadableMap options, Promise promise){
+    billingSdk.queryPurchases(productType, getProjection(options), promise);
+  }
+
+  /**
+   * Same as queryPurchases, but resolves { etag, unchanged, items } and leaves `items` null when
+   * the active purchases match the ones identified by `etag`.
+   */
+  @ReactMethod
+  public void queryPurchasesIfChanged(String productType, @Nullable String etag, @Nullable ReadableMap options, Promise promise){
+    billingSdk.queryPurchasesIfChanged(productType, etag, getProjection(options), promise);
+  }
+
+  /**
+   * Same as queryPurchases, but resolves { cursor, items, total, hasMore } with only the first page
+   * of purchases. The next pages are converted and resolved by fetchPage.
+   *
+   * @param options { pageSize?: number, fields?: string[] }
+   */
+  @ReactMethod
+  public void queryPurchasesPaged(String productType, @Nullable ReadableMap options, Promise promise){
+    billingSdk.queryPurchasesPaged(productType, getProjection(options), getPageSize(options), promise);
+  }
+
+  /**
+   * Resolves the next page of a cursor. The cursor is released once its last page is fetched.
+   */
+  @ReactMethod
+  public void fetchPage(String cursor, Promise promise){
+    billingSdk.fetchPage(cursor, promise);
+  }
+
+  /**
+   * Releases a cursor whose remaining pages are not needed.
+   */
   @ReactMethod
-  public void queryPurchases(String productType, Promise promise){
-    billingSdk.queryPurchases(productType,promise);
+  public void releaseCursor(String cursor, Promise promise){
+    billingSdk.releaseCursor(cursor, promise);
   }
 
   @ReactMethod
@@ -103,12 +509,41 @@ public class BillingSdkModule extends ReactContextBaseJavaModule {
   }
 
   @ReactMethod
-  public void removeListeners(Integer count) {
-    this.eventEmitter.removeListeners(count);
+  public void removeListeners(double count) {
+    this.eventEmitter.removeListeners((int) count);
+  }
+
+  /**
+   * Removes a listener of a known event, so that events nobody listens to anymore are not converted.
+   */
+  @ReactMethod
+  public void removeEventListener(String eventName) {
+    this.eventEmitter.removeEventListener(eventName);
+  }
+
+  /**
+   * Forgets the listeners of the previous JS bundle, called when the JS module is loaded.
+   */
+  @ReactMethod
+  public void resetEventListeners() {
+    this.eventEmitter.resetListeners();
   }
 
   @ReactMethod
   public void consume(String purchaseToken, Promise promise){
     billingSdk.consume(purchaseToken, promise);
   }
+
+  /**
+   * Consumes several purchases with a bounded number of concurrent Google Play calls.
+   * Tokens already being consumed are not consumed twice.
+   *
+   * @param purchaseTokens Tokens of the purchases to consume.
+   * @param options { concurrency?: number } maximum number of concurrent calls, 4 by default.
+   * @param promise Promise resolved with { [purchaseToken]: { ok, responseCode, debugMessage } }.
+   */
+  @ReactMethod
+  public void consumeAll(ReadableArray purchaseTokens, @Nullable ReadableMap options, Promise promise){
+    billingSdk.consumeAll(toStringList(purchaseTokens), getConcurrency(options), promise);
+  }
 }
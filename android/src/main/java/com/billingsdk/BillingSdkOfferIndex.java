@@ -0,0 +1,196 @@
+package com.billingsdk;
+
+import androidx.annotation.Nullable;
+
+import com.android.billingclient.api.ProductDetails;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeArray;
+import com.facebook.react.bridge.WritableNativeMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Offers of a subscription indexed for paywalls, built once when its ProductDetails are stored.
+ * Pricing phases are reduced to a price per month and to the price paid over the first year, in
+ * micros, so that resolving the offer to show does not walk or parse the pricing phases again.
+ */
+public class BillingSdkOfferIndex {
+    // Offer with the lowest price over the first year, trials and introductory prices included.
+    public static final String STRATEGY_CHEAPEST = "cheapest";
+    // Cheapest offer starting with a free trial.
+    public static final String STRATEGY_FREE_TRIAL = "freeTrial";
+    // Base plan without any offer.
+    public static final String STRATEGY_BASE_PLAN = "basePlan";
+    // Cheapest offer with the requested tag.
+    public static final String STRATEGY_TAG = "tag";
+
+    private static final double DAYS_PER_MONTH = 365.25 / 12;
+    private static final Pattern BILLING_PERIOD = Pattern.compile("P(?:(\\d+)Y)?(?:(\\d+)M)?(?:(\\d+)W)?(?:(\\d+)D)?");
+
+    public static class Offer {
+        public final String offerToken;
+        public final String basePlanId;
+        public final @Nullable String offerId;
+        public final List<String> offerTags;
+        public final long monthlyPriceMicros;
+        public final long firstYearPriceMicros;
+        public final int freeTrialDays;
+        public final String priceCurrencyCode;
+
+        private Offer(ProductDetails.SubscriptionOfferDetails details) {
+            this.offerToken = details.getOfferToken();
+            this.basePlanId = details.getBasePlanId();
+            this.offerId = details.getOfferId();
+            this.offerTags = details.getOfferTags();
+
+            List<ProductDetails.PricingPhase> phases = details.getPricingPhases().getPricingPhaseList();
+            ProductDetails.PricingPhase recurringPhase = phases.get(phases.size() - 1);
+            this.monthlyPriceMicros = (long) (recurringPhase.getPriceAmountMicros() / getMonths(recurringPhase.getBillingPeriod()));
+            this.priceCurrencyCode = recurringPhase.getPriceCurrencyCode();
+
+            ProductDetails.PricingPhase firstPhase = phases.get(0);
+            this.freeTrialDays = firstPhase.getPriceAmountMicros() == 0 && phases.size() > 1
+                    ? (int) Math.round(getMonths(firstPhase.getBillingPeriod()) * DAYS_PER_MONTH * Math.max(1, firstPhase.getBillingCycleCount()))
+                    : 0;
+            this.firstYearPriceMicros = getFirstYearPriceMicros(phases);
+        }
+
+        public WritableMap toMap() {
+            WritableArray tags = new WritableNativeArray();
+            for(String tag: offerTags) tags.pushString(tag);
+
+            WritableMap json = new WritableNativeMap();
+            json.putString("offerToken", offerToken);
+            json.putString("basePlanId", basePlanId);
+            if(offerId != null) json.putString("offerId", offerId);
+            else json.putNull("offerId");
+            json.putArray("offerTags", tags);
+            json.putString("monthlyPriceMicros", String.valueOf(monthlyPriceMicros));
+            json.putString("firstYearPriceMicros", String.valueOf(firstYearPriceMicros));
+            json.putString("priceCurrencyCode", priceCurrencyCode);
+            json.putInt("freeTrialDays", freeTrialDays);
+            return json;
+        }
+    }
+
+    private static final Comparator<Offer> BY_PRICE = new Comparator<Offer>() {
+        @Override
+        public int compare(Offer a, Offer b) {
+            int result = Long.compare(a.firstYearPriceMicros, b.firstYearPriceMicros);
+            return result != 0 ? result : Long.compare(a.monthlyPriceMicros, b.monthlyPriceMicros);
+        }
+    };
+
+    // Sorted by price, cheapest first.
+    private final List<Offer> offers = new ArrayList<>();
+    private final List<Offer> freeTrialOffers = new ArrayList<>();
+    private final Map<String, List<Offer>> offersByTag = new HashMap<>();
+    private final Map<String, Offer> basePlans = new HashMap<>();
+
+    public BillingSdkOfferIndex(List<ProductDetails.SubscriptionOfferDetails> subscriptionOfferDetails) {
+        for(ProductDetails.SubscriptionOfferDetails details: subscriptionOfferDetails){
+            if(details.getPricingPhases().getPricingPhaseList().isEmpty()) continue;
+            offers.add(new Offer(details));
+        }
+        Collections.sort(offers, BY_PRICE);
+
+        for(Offer offer: offers){
+            if(offer.freeTrialDays > 0) freeTrialOffers.add(offer);
+            if(offer.offerId == null) basePlans.put(offer.basePlanId, offer);
+
+            for(String tag: offer.offerTags){
+                List<Offer> taggedOffers = offersByTag.get(tag);
+                if(taggedOffers == null){
+                    taggedOffers = new ArrayList<>();
+                    offersByTag.put(tag, taggedOffers);
+                }
+                taggedOffers.add(offer);
+            }
+        }
+    }
+
+    public static boolean isStrategy(String strategy) {
+        return STRATEGY_CHEAPEST.equals(strategy)
+                || STRATEGY_FREE_TRIAL.equals(strategy)
+                || STRATEGY_BASE_PLAN.equals(strategy)
+                || STRATEGY_TAG.equals(strategy);
+    }
+
+    /**
+     * Returns the offer selected by the strategy, optionally limited to one base plan, or null when
+     * no offer matches.
+     */
+    public @Nullable Offer resolve(String strategy, @Nullable String tag, @Nullable String basePlanId) {
+        if(STRATEGY_BASE_PLAN.equals(strategy)){
+            if(basePlanId != null) return basePlans.get(basePlanId);
+            return getFirst(offers, null, true);
+        }
+
+        if(STRATEGY_FREE_TRIAL.equals(strategy)) return getFirst(freeTrialOffers, basePlanId, false);
+
+        if(STRATEGY_TAG.equals(strategy)){
+            List<Offer> taggedOffers = tag == null ? null : offersByTag.get(tag);
+            return taggedOffers == null ? null : getFirst(taggedOffers, basePlanId, false);
+        }
+
+        return getFirst(offers, basePlanId, false);
+    }
+
+    private static @Nullable Offer getFirst(List<Offer> candidates, @Nullable String basePlanId, boolean basePlansOnly) {
+        for(Offer offer: candidates){
+            if(basePlanId != null && !basePlanId.equals(offer.basePlanId)) continue;
+            if(basePlansOnly && offer.offerId != null) continue;
+            return offer;
+        }
+        return null;
+    }
+
+    /**
+     * Length of an ISO 8601 billing period (e.g. P1W, P3M, P1Y) in months.
+     */
+    private static double getMonths(String billingPeriod) {
+        Matcher matcher = BILLING_PERIOD.matcher(billingPeriod);
+        if(!matcher.matches()) return 1;
+
+        double months = parse(matcher.group(1)) * 12
+                + parse(matcher.group(2))
+                + (parse(matcher.group(3)) * 7 + parse(matcher.group(4))) / DAYS_PER_MONTH;
+        return months > 0 ? months : 1;
+    }
+
+    private static int parse(@Nullable String value) {
+        return value == null ? 0 : Integer.parseInt(value);
+    }
+
+    /**
+     * Price paid over the first 12 months of the offer. Every billing cycle starting within them is
+     * charged in full.
+     */
+    private static long getFirstYearPriceMicros(List<ProductDetails.PricingPhase> phases) {
+        double remainingMonths = 12;
+        long total = 0;
+
+        for(ProductDetails.PricingPhase phase: phases){
+            if(remainingMonths <= 0) break;
+
+            double periodMonths = getMonths(phase.getBillingPeriod());
+            int cycles = (int) Math.ceil(remainingMonths / periodMonths - 1e-9);
+
+            if(phase.getRecurrenceMode() == ProductDetails.RecurrenceMode.FINITE_RECURRING) cycles = Math.min(cycles, Math.max(1, phase.getBillingCycleCount()));
+            else if(phase.getRecurrenceMode() == ProductDetails.RecurrenceMode.NON_RECURRING) cycles = 1;
+
+            total += phase.getPriceAmountMicros() * cycles;
+            remainingMonths -= periodMonths * cycles;
+        }
+
+        return total;
+    }
+}
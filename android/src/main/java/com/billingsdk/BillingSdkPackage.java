@@ -1,28 +1,86 @@
 package com.billingsdk;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
-import com.facebook.react.ReactPackage;
+import com.facebook.react.TurboReactPackage;
 import com.facebook.react.bridge.NativeModule;
 import com.facebook.react.bridge.ReactApplicationContext;
-import com.facebook.react.uimanager.ViewManager;
+import com.facebook.react.module.model.ReactModuleInfo;
+import com.facebook.react.module.model.ReactModuleInfoProvider;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-public class BillingSdkPackage implements ReactPackage {
-  @NonNull
+public class BillingSdkPackage extends TurboReactPackage {
+  private static final Map<String, List<String>> prefetchProductIds = new HashMap<>();
+  private static boolean prefetchPurchases = false;
+
+  /**
+   * Opt-in startup prefetch. When set, the billing connection is started and the details of these
+   * products are loaded as soon as the module is created, before the JS bundle has finished loading,
+   * and the first queryProductDetails call for them resolves from the prefetched result.
+   * Call it from Application.onCreate, before the React host is created.
+   *
+   * @param productType The type of the products (e.g., inapp or subs).
+   * @param productIds Product ids to prefetch.
+   */
+  public static synchronized void setPrefetchProducts(String productType, List<String> productIds) {
+    prefetchProductIds.put(productType, new ArrayList<>(productIds));
+  }
+
+  /**
+   * Opt-in startup prefetch of the active in app and subscription purchases. The first queryPurchases
+   * call of each type resolves from the prefetched result.
+   */
+  public static synchronized void setPrefetchPurchases(boolean enabled) {
+    prefetchPurchases = enabled;
+  }
+
+  @Nullable
   @Override
-  public List<NativeModule> createNativeModules(@NonNull ReactApplicationContext reactContext) {
-    List<NativeModule> modules = new ArrayList<>();
-    modules.add(new BillingSdkModule(reactContext));
-    return modules;
+  public NativeModule getModule(@NonNull String name, @NonNull ReactApplicationContext reactContext) {
+    if(!name.equals(BillingSdkModule.NAME)) return null;
+
+    BillingSdkModule module = new BillingSdkModule(reactContext);
+
+    Map<String, List<String>> productIds;
+    boolean includePurchases;
+    synchronized (BillingSdkPackage.class) {
+      productIds = new HashMap<>(prefetchProductIds);
+      includePurchases = prefetchPurchases;
+    }
+    module.prefetch(productIds, includePurchases);
+
+    return module;
+  }
+
+  private static synchronized boolean hasPrefetch() {
+    return !prefetchProductIds.isEmpty() || prefetchPurchases;
   }
 
-  @NonNull
   @Override
-  public List<ViewManager> createViewManagers(@NonNull ReactApplicationContext reactContext) {
-    return Collections.emptyList();
+  public ReactModuleInfoProvider getReactModuleInfoProvider() {
+    return new ReactModuleInfoProvider() {
+      @Override
+      public Map<String, ReactModuleInfo> getReactModuleInfos() {
+        Map<String, ReactModuleInfo> moduleInfos = new HashMap<>();
+        boolean isTurboModule = BuildConfig.IS_NEW_ARCHITECTURE_ENABLED;
+        moduleInfos.put(
+          BillingSdkModule.NAME,
+          new ReactModuleInfo(
+            BillingSdkModule.NAME,
+            BillingSdkModule.NAME,
+            false, // canOverrideExistingModule
+            hasPrefetch(), // needsEagerInit, so that the prefetch starts with the React instance
+            false, // hasConstants
+            false, // isCxxModule
+            isTurboModule // isTurboModule
+          ));
+        return moduleInfos;
+      }
+    };
   }
 }
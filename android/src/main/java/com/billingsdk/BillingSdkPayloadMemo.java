@@ -0,0 +1,204 @@
+package com.billingsdk;
+
+import androidx.annotation.Nullable;
+
+import com.android.billingclient.api.ProductDetails;
+import com.android.billingclient.api.Purchase;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeArray;
+import com.facebook.react.bridge.WritableNativeMap;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content keyed memo of converted Purchase and ProductDetails payloads. A payload is reused as long as
+ * the source object is equal to the one it was converted from (same original JSON and signature for
+ * purchases, same JSON for product details), so unchanged objects are copied natively instead of being
+ * converted again. Also computes the etags used to tell JS that a result has not changed.
+ */
+public class BillingSdkPayloadMemo {
+    private static final int MAX_SIZE = 500;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static class Entry {
+        private final Object source;
+        private final WritableNativeMap payload;
+
+        private Entry(Object source, WritableNativeMap payload) {
+            this.source = source;
+            this.payload = payload;
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private final BillingSdkMetrics metrics;
+    private final BillingSdkPurchaseVerifier verifier;
+    private long hits = 0;
+    private long misses = 0;
+
+    public BillingSdkPayloadMemo(BillingSdkMetrics metrics, BillingSdkPurchaseVerifier verifier) {
+        this.metrics = metrics;
+        this.verifier = verifier;
+    }
+
+    private synchronized WritableNativeMap find(String key, Object source) {
+        Entry entry = entries.get(key);
+        if(entry == null || !entry.source.equals(source)){
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return entry.payload;
+    }
+
+    private synchronized void remember(String key, Object source, WritableNativeMap payload) {
+        entries.put(key, new Entry(source, payload));
+    }
+
+    private static WritableMap copy(WritableNativeMap payload) {
+        WritableNativeMap json = new WritableNativeMap();
+        json.merge(payload);
+        return json;
+    }
+
+    public WritableMap convertPurchase(Purchase purchase, BillingSdkProjection projection) {
+        String key = "purchase:" + purchase.getPurchaseToken() + ":" + projection.getKey();
+
+        WritableNativeMap payload = find(key, purchase);
+        if(payload == null){
+            payload = (WritableNativeMap) BillingSdkConverter.convertPurchaseToJson(purchase, projection);
+            remember(key, purchase, payload);
+        }
+
+        WritableMap json = copy(payload);
+        // Added to the copy since the result depends on the configured key, the verifier memoizes it.
+        if(projection.includes("verified")){
+            Boolean verified = verifier.verify(purchase);
+            if(verified != null) json.putBoolean("verified", verified);
+        }
+        return json;
+    }
+
+    public WritableMap convertProductDetails(ProductDetails productDetails, BillingSdkProjection projection) {
+        String key = "product:" + productDetails.getProductType() + ":" + productDetails.getProductId() + ":" + projection.getKey();
+
+        WritableNativeMap payload = find(key, productDetails);
+        if(payload == null){
+            payload = (WritableNativeMap) BillingSdkConverter.convertProductDetailsToJson(productDetails, projection);
+            remember(key, productDetails, payload);
+        }
+
+        return copy(payload);
+    }
+
+    public ReadableArray convertPurchaseList(List<Purchase> purchaseList, BillingSdkProjection projection) {
+        long startedAt = BillingSdkMetrics.start();
+        WritableArray array = new WritableNativeArray();
+        for(Purchase purchase: purchaseList) array.pushMap(convertPurchase(purchase, projection));
+        metrics.record(BillingSdkMetrics.CONVERT_PURCHASES, startedAt);
+        return array;
+    }
+
+    public ReadableArray convertProductDetailsList(List<ProductDetails> productDetailsList, BillingSdkProjection projection) {
+        long startedAt = BillingSdkMetrics.start();
+        WritableArray array = new WritableNativeArray();
+        for(ProductDetails productDetails: productDetailsList) array.pushMap(convertProductDetails(productDetails, projection));
+        metrics.record(BillingSdkMetrics.CONVERT_PRODUCT_DETAILS, startedAt);
+        return array;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Digest of the purchases content (original JSON and signature) and of the requested fields.
+     */
+    public static String getPurchaseListEtag(List<Purchase> purchaseList, BillingSdkProjection projection) {
+        MessageDigest digest = newDigest();
+        digest.update(projection.getKey().getBytes(UTF_8));
+
+        for(Purchase purchase: purchaseList){
+            digest.update(purchase.getOriginalJson().getBytes(UTF_8));
+            digest.update(String.valueOf(purchase.getSignature()).getBytes(UTF_8));
+        }
+
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Digest of the product details content and of the requested fields. ProductDetails has no public
+     * accessor for its raw JSON, so every field serialized by BillingSdkConverter is digested through its
+     * public getter.
+     */
+    public static String getProductDetailsListEtag(List<ProductDetails> productDetailsList, BillingSdkProjection projection) {
+        MessageDigest digest = newDigest();
+        digest.update(projection.getKey().getBytes(UTF_8));
+
+        for(ProductDetails productDetails: productDetailsList){
+            update(digest, productDetails.getProductId(), productDetails.getProductType(), productDetails.getName(), productDetails.getTitle(), productDetails.getDescription());
+
+            ProductDetails.OneTimePurchaseOfferDetails oneTimePurchaseOfferDetails = productDetails.getOneTimePurchaseOfferDetails();
+            if(oneTimePurchaseOfferDetails != null){
+                update(digest, "oneTimePurchaseOfferDetails", oneTimePurchaseOfferDetails.getFormattedPrice(), oneTimePurchaseOfferDetails.getPriceCurrencyCode(),
+                        String.valueOf(oneTimePurchaseOfferDetails.getPriceAmountMicros()));
+            }
+
+            List<ProductDetails.SubscriptionOfferDetails> subscriptionOfferDetailsList = productDetails.getSubscriptionOfferDetails();
+            if(subscriptionOfferDetailsList == null) continue;
+
+            for(ProductDetails.SubscriptionOfferDetails offer: subscriptionOfferDetailsList){
+                update(digest, "subscriptionOfferDetails", offer.getBasePlanId(), offer.getOfferId(), offer.getOfferToken(), String.valueOf(offer.getOfferTags()));
+
+                for(ProductDetails.PricingPhase pricingPhase: offer.getPricingPhases().getPricingPhaseList()){
+                    update(digest, "pricingPhase", pricingPhase.getBillingPeriod(), pricingPhase.getFormattedPrice(), pricingPhase.getPriceCurrencyCode(),
+                            String.valueOf(pricingPhase.getPriceAmountMicros()), String.valueOf(pricingPhase.getRecurrenceMode()), String.valueOf(pricingPhase.getBillingCycleCount()));
+                }
+            }
+        }
+
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Digests each value followed by a separator, so that moving characters between fields changes the digest.
+     */
+    private static void update(MessageDigest digest, @Nullable String... values) {
+        for(String value: values){
+            digest.update(String.valueOf(value).getBytes(UTF_8));
+            digest.update((byte) 0);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for(byte b: bytes) builder.append(String.format("%02x", b));
+        return builder.toString();
+    }
+}
@@ -0,0 +1,218 @@
+package com.billingsdk;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.android.billingclient.api.BillingClient;
+import com.android.billingclient.api.BillingResult;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent queue of acknowledge and consume operations. An operation is recorded before its Google Play
+ * call and removed once it succeeds or fails permanently, so operations interrupted by transient errors or
+ * by process death are retried with exponential backoff on a background thread.
+ */
+public class BillingSdkPendingOperationQueue {
+    public static final String TYPE_ACKNOWLEDGE = "acknowledge";
+    public static final String TYPE_CONSUME = "consume";
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 10;
+    public static final long DEFAULT_BASE_DELAY = 1000;
+    public static final long DEFAULT_MAX_DELAY = 15 * 60 * 1000L;
+
+    private static final String PREFERENCES_NAME = "com.billingsdk.pending_operations";
+    private static final String KEY_ENABLED = "enabled";
+    private static final String OPERATION_KEY_PREFIX = "operation:";
+    private static final String KEY_TYPE = "type";
+    private static final String KEY_PURCHASE_TOKEN = "purchaseToken";
+    private static final String KEY_ATTEMPTS = "attempts";
+    private static final String KEY_NEXT_ATTEMPT_AT = "nextAttemptAt";
+
+    public interface Executor {
+        void execute(String type, String purchaseToken, BillingSdkTokenOperationRunner.Callback callback);
+    }
+
+    public interface Listener {
+        void onOperationResult(String type, String purchaseToken, BillingResult billingResult, int attempts, boolean willRetry);
+    }
+
+    private final SharedPreferences preferences;
+    private final ScheduledExecutorService scheduler;
+    private final Random random = new Random();
+    private final Set<String> retryingKeys = new HashSet<>();
+    private final Executor executor;
+    private final Listener listener;
+
+    private volatile boolean enabled;
+    private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private volatile long baseDelay = DEFAULT_BASE_DELAY;
+    private volatile long maxDelay = DEFAULT_MAX_DELAY;
+
+    public BillingSdkPendingOperationQueue(Context context, ScheduledExecutorService scheduler, Executor executor, Listener listener) {
+        this.scheduler = scheduler;
+        this.preferences = context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        this.enabled = preferences.getBoolean(KEY_ENABLED, false);
+        this.executor = executor;
+        this.listener = listener;
+    }
+
+    public void configure(boolean enabled, int maxAttempts, long baseDelay, long maxDelay) {
+        this.enabled = enabled;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelay = Math.max(0, baseDelay);
+        this.maxDelay = Math.max(this.baseDelay, maxDelay);
+        preferences.edit().putBoolean(KEY_ENABLED, enabled).commit();
+    }
+
+    public static boolean isRetriable(int responseCode) {
+        switch (responseCode) {
+            case BillingClient.BillingResponseCode.SERVICE_DISCONNECTED:
+            case BillingClient.BillingResponseCode.SERVICE_TIMEOUT:
+            case BillingClient.BillingResponseCode.SERVICE_UNAVAILABLE:
+            case BillingClient.BillingResponseCode.NETWORK_ERROR:
+            case BillingClient.BillingResponseCode.ERROR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static String getKey(String type, String purchaseToken) {
+        return OPERATION_KEY_PREFIX + type + ":" + purchaseToken;
+    }
+
+    /**
+     * Records an operation right before its Google Play call. The record is written to disk before
+     * returning, so that it survives the process being killed during the call.
+     */
+    public synchronized void add(String type, String purchaseToken) {
+        if(!enabled) return;
+
+        String key = getKey(type, purchaseToken);
+        if(preferences.contains(key)) return;
+
+        try {
+            JSONObject operation = new JSONObject();
+            operation.put(KEY_TYPE, type);
+            operation.put(KEY_PURCHASE_TOKEN, purchaseToken);
+            operation.put(KEY_ATTEMPTS, 0);
+            operation.put(KEY_NEXT_ATTEMPT_AT, 0);
+            preferences.edit().putString(key, operation.toString()).commit();
+        } catch (JSONException ignored) {}
+    }
+
+    /**
+     * Records the result of an operation's Google Play call. Successful and permanently failed operations
+     * are removed, transiently failed ones are scheduled for a retry.
+     */
+    public void complete(String type, String purchaseToken, BillingResult billingResult) {
+        String key = getKey(type, purchaseToken);
+        boolean isRetry;
+        int attempts;
+        boolean willRetry;
+        long delay = 0;
+
+        synchronized (this) {
+            isRetry = retryingKeys.remove(key);
+            String raw = preferences.getString(key, null);
+            if(raw == null) return;
+
+            try {
+                JSONObject operation = new JSONObject(raw);
+                attempts = operation.getInt(KEY_ATTEMPTS) + 1;
+                willRetry = enabled && isRetriable(billingResult.getResponseCode()) && attempts < maxAttempts;
+
+                if(willRetry){
+                    delay = getDelay(attempts);
+                    operation.put(KEY_ATTEMPTS, attempts);
+                    operation.put(KEY_NEXT_ATTEMPT_AT, System.currentTimeMillis() + delay);
+                    preferences.edit().putString(key, operation.toString()).commit();
+                } else {
+                    preferences.edit().remove(key).commit();
+                }
+            } catch (JSONException e) {
+                preferences.edit().remove(key).commit();
+                return;
+            }
+        }
+
+        if(willRetry) scheduleRetry(delay);
+        if(isRetry) listener.onOperationResult(type, purchaseToken, billingResult, attempts, willRetry);
+    }
+
+    private long getDelay(int attempts) {
+        long delay = baseDelay << Math.min(attempts - 1, 30);
+        if(delay <= 0 || delay > maxDelay) delay = maxDelay;
+        // Up to 20% jitter so that operations failing together are not retried together.
+        return delay + (long) (delay * 0.2 * random.nextDouble());
+    }
+
+    private void scheduleRetry(long delay) {
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                retryDue();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Retries every recorded operation whose backoff delay has elapsed, on the queue's background thread.
+     * Called when the billing client connects and when the app resumes.
+     */
+    public void retry() {
+        if(!enabled) return;
+
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                retryDue();
+            }
+        });
+    }
+
+    private void retryDue() {
+        if(!enabled) return;
+        long now = System.currentTimeMillis();
+
+        Map<String, ?> entries;
+        synchronized (this) {
+            entries = preferences.getAll();
+        }
+
+        for(Map.Entry<String, ?> entry: entries.entrySet()){
+            if(!entry.getKey().startsWith(OPERATION_KEY_PREFIX)) continue;
+
+            final String type;
+            final String purchaseToken;
+            try {
+                JSONObject operation = new JSONObject(String.valueOf(entry.getValue()));
+                if(operation.getLong(KEY_NEXT_ATTEMPT_AT) > now) continue;
+                type = operation.getString(KEY_TYPE);
+                purchaseToken = operation.getString(KEY_PURCHASE_TOKEN);
+            } catch (JSONException e) {
+                continue;
+            }
+
+            synchronized (this) {
+                if(!retryingKeys.add(entry.getKey())) continue;
+            }
+
+            executor.execute(type, purchaseToken, new BillingSdkTokenOperationRunner.Callback() {
+                @Override
+                public void onResult(BillingResult billingResult) {
+                    // Results are recorded by the operation itself through complete().
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.billingsdk;
+
+import android.app.Activity;
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.android.billingclient.api.AcknowledgePurchaseParams;
+import com.android.billingclient.api.AcknowledgePurchaseResponseListener;
+import com.android.billingclient.api.BillingClient;
+import com.android.billingclient.api.BillingClientStateListener;
+import com.android.billingclient.api.BillingFlowParams;
+import com.android.billingclient.api.BillingResult;
+import com.android.billingclient.api.ConsumeParams;
+import com.android.billingclient.api.ConsumeResponseListener;
+import com.android.billingclient.api.PendingPurchasesParams;
+import com.android.billingclient.api.ProductDetailsResponseListener;
+import com.android.billingclient.api.PurchasesResponseListener;
+import com.android.billingclient.api.PurchasesUpdatedListener;
+import com.android.billingclient.api.QueryProductDetailsParams;
+import com.android.billingclient.api.QueryProductDetailsResult;
+import com.android.billingclient.api.QueryPurchasesParams;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BillingSdkClient backed by the Play Billing Library.
+ */
+public class BillingSdkPlayClient implements BillingSdkClient {
+    private final BillingClient billingClient;
+
+    public BillingSdkPlayClient(Context context, PurchasesUpdatedListener purchasesUpdatedListener) {
+        this.billingClient = BillingClient.newBuilder(context)
+                .setListener(purchasesUpdatedListener)
+                .enablePendingPurchases(PendingPurchasesParams.newBuilder().enableOneTimeProducts().build())
+                .enableAutoServiceReconnection()
+                .build();
+    }
+
+    public static Factory factory(final Context context) {
+        return new Factory() {
+            @Override
+            public BillingSdkClient create(PurchasesUpdatedListener purchasesUpdatedListener) {
+                return new BillingSdkPlayClient(context, purchasesUpdatedListener);
+            }
+        };
+    }
+
+    @Override
+    public boolean isReady() {
+        return billingClient.isReady();
+    }
+
+    @Override
+    public int getConnectionState() {
+        return billingClient.getConnectionState();
+    }
+
+    @Override
+    public void startConnection(BillingClientStateListener listener) {
+        billingClient.startConnection(listener);
+    }
+
+    @Override
+    public void endConnection() {
+        billingClient.endConnection();
+    }
+
+    @Override
+    public void queryProductDetails(List<String> productIds, String productType, final ProductDetailsListener listener) {
+        List<QueryProductDetailsParams.Product> products = new ArrayList<>();
+
+        for(String productId: productIds){
+            products.add(QueryProductDetailsParams.Product.newBuilder()
+                    .setProductId(productId)
+                    .setProductType(productType)
+                    .build());
+        }
+
+        QueryProductDetailsParams params = QueryProductDetailsParams.newBuilder().setProductList(products).build();
+        billingClient.queryProductDetailsAsync(params, new ProductDetailsResponseListener() {
+            @Override
+            public void onProductDetailsResponse(@NonNull BillingResult billingResult, @NonNull QueryProductDetailsResult result) {
+                listener.onProductDetailsResponse(billingResult, result.getProductDetailsList());
+            }
+        });
+    }
+
+    @Override
+    public void queryPurchases(String productType, PurchasesResponseListener listener) {
+        billingClient.queryPurchasesAsync(QueryPurchasesParams.newBuilder().setProductType(productType).build(), listener);
+    }
+
+    @Override
+    public void acknowledgePurchase(String purchaseToken, AcknowledgePurchaseResponseListener listener) {
+        billingClient.acknowledgePurchase(AcknowledgePurchaseParams.newBuilder().setPurchaseToken(purchaseToken).build(), listener);
+    }
+
+    @Override
+    public void consume(String purchaseToken, ConsumeResponseListener listener) {
+        billingClient.consumeAsync(ConsumeParams.newBuilder().setPurchaseToken(purchaseToken).build(), listener);
+    }
+
+    @Override
+    public BillingResult launchBillingFlow(Activity activity, BillingFlowParams billingFlowParams) {
+        return billingClient.launchBillingFlow(activity, billingFlowParams);
+    }
+}
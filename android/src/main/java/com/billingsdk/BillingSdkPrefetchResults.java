@@ -0,0 +1,148 @@
+package com.billingsdk;
+
+import androidx.annotation.Nullable;
+
+import com.android.billingclient.api.BillingClient;
+import com.android.billingclient.api.BillingResult;
+import com.android.billingclient.api.ProductDetails;
+import com.android.billingclient.api.Purchase;
+import com.android.billingclient.api.PurchasesResponseListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Holds the product details and purchases loaded at startup, before JS asked for them, so the first
+ * JS queries resolve without waiting for Google Play. Each prefetched result is served once, to the
+ * first query asking for it within MAX_AGE; later queries go through the product details store and
+ * cache, or to Google Play. JS queries arriving while the startup purchase query is still in flight
+ * wait for its result.
+ */
+public class BillingSdkPrefetchResults {
+    public static final long MAX_AGE = 5 * 60 * 1000L;
+
+    private static class ProductDetailsEntry {
+        private final @Nullable ProductDetails productDetails;
+        private final long fetchedAt;
+
+        private ProductDetailsEntry(@Nullable ProductDetails productDetails, long fetchedAt) {
+            this.productDetails = productDetails;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    private static class PurchasesEntry {
+        private final List<PurchasesResponseListener> waitingListeners = new ArrayList<>();
+        private @Nullable BillingResult billingResult;
+        private @Nullable List<Purchase> purchases;
+        private long fetchedAt;
+    }
+
+    private final Map<String, ProductDetailsEntry> productDetails = new HashMap<>();
+    private final Map<String, PurchasesEntry> purchases = new HashMap<>();
+
+    private static String getKey(String productId, String productType) {
+        return productType + ":" + productId;
+    }
+
+    /**
+     * Records the result of a startup product details query. Requested products that Google Play did not
+     * return are remembered as missing so that they are not queried again.
+     */
+    public synchronized void putProductDetails(String productType, List<String> productIds, List<ProductDetails> productDetailsList) {
+        long now = System.currentTimeMillis();
+        for(String productId: productIds) productDetails.put(getKey(productId, productType), new ProductDetailsEntry(null, now));
+        for(ProductDetails details: productDetailsList) productDetails.put(getKey(details.getProductId(), productType), new ProductDetailsEntry(details, now));
+    }
+
+    /**
+     * Returns the prefetched details of the products in request order and forgets them, or null when any
+     * of them was not prefetched, was already served or is too old.
+     */
+    public synchronized @Nullable List<ProductDetails> takeProductDetails(List<String> productIds, String productType) {
+        if(productDetails.isEmpty()) return null;
+
+        long now = System.currentTimeMillis();
+        Set<String> keys = new LinkedHashSet<>();
+        List<ProductDetails> list = new ArrayList<>();
+
+        for(String productId: new LinkedHashSet<>(productIds)){
+            String key = getKey(productId, productType);
+            ProductDetailsEntry entry = productDetails.get(key);
+            if(entry == null) return null;
+
+            if(now - entry.fetchedAt > MAX_AGE){
+                productDetails.remove(key);
+                return null;
+            }
+
+            keys.add(key);
+            if(entry.productDetails != null) list.add(entry.productDetails);
+        }
+
+        productDetails.keySet().removeAll(keys);
+        return list;
+    }
+
+    public synchronized void startPurchases(String productType) {
+        purchases.put(productType, new PurchasesEntry());
+    }
+
+    /**
+     * Records the result of a startup purchase query and hands it to the JS queries waiting for it.
+     * The result is kept for the next query only if nobody was waiting and it succeeded.
+     */
+    public void putPurchases(String productType, BillingResult billingResult, List<Purchase> purchaseList) {
+        List<PurchasesResponseListener> listeners;
+
+        synchronized (this) {
+            PurchasesEntry entry = purchases.get(productType);
+            if(entry == null) return;
+
+            listeners = new ArrayList<>(entry.waitingListeners);
+            entry.waitingListeners.clear();
+
+            if(listeners.isEmpty() && billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK){
+                entry.billingResult = billingResult;
+                entry.purchases = purchaseList;
+                entry.fetchedAt = System.currentTimeMillis();
+            } else {
+                purchases.remove(productType);
+            }
+        }
+
+        for(PurchasesResponseListener listener: listeners) listener.onQueryPurchasesResponse(billingResult, purchaseList);
+    }
+
+    /**
+     * Serves a purchase query from the startup query, waiting for it if it is still in flight.
+     * Returns false when there is nothing to serve and Google Play should be queried.
+     */
+    public boolean takePurchases(String productType, PurchasesResponseListener listener) {
+        BillingResult billingResult;
+        List<Purchase> purchaseList;
+
+        synchronized (this) {
+            PurchasesEntry entry = purchases.get(productType);
+            if(entry == null) return false;
+
+            if(entry.billingResult == null){
+                entry.waitingListeners.add(listener);
+                return true;
+            }
+
+            purchases.remove(productType);
+            if(System.currentTimeMillis() - entry.fetchedAt > MAX_AGE) return false;
+
+            billingResult = entry.billingResult;
+            purchaseList = entry.purchases;
+        }
+
+        listener.onQueryPurchasesResponse(billingResult, purchaseList);
+        return true;
+    }
+}
@@ -0,0 +1,162 @@
+package com.billingsdk;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableNativeArray;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Disk backed cache of converted product details payloads, keyed by product type and product id.
+ * Entries younger than the TTL are served immediately while a background query revalidates them,
+ * so a cold started paywall can render prices without waiting for Google Play.
+ */
+public class BillingSdkProductCache {
+    private static final String PREFERENCES_NAME = "com.billingsdk.product_cache";
+    private static final String KEY_FETCHED_AT = "fetchedAt";
+    private static final String KEY_PAYLOAD = "payload";
+
+    public static final long DEFAULT_TTL = 24 * 60 * 60 * 1000L;
+    public static final long DEFAULT_REVALIDATE_AFTER = 5 * 60 * 1000L;
+
+    private final SharedPreferences preferences;
+    private volatile boolean enabled = false;
+    private volatile long ttl = DEFAULT_TTL;
+    private volatile long revalidateAfter = DEFAULT_REVALIDATE_AFTER;
+
+    public BillingSdkProductCache(Context context) {
+        this.preferences = context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    public void configure(boolean enabled, long ttl, long revalidateAfter) {
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.revalidateAfter = revalidateAfter;
+        pruneExpired();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void clear() {
+        preferences.edit().clear().apply();
+    }
+
+    private static String getKey(String productId, String productType) {
+        return productType + ":" + productId;
+    }
+
+    private @Nullable JSONObject parseEntry(@Nullable Object raw) {
+        if(!(raw instanceof String)) return null;
+
+        try {
+            JSONObject entry = new JSONObject((String) raw);
+            if(System.currentTimeMillis() - entry.getLong(KEY_FETCHED_AT) > ttl) return null;
+            return entry;
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the entry if it is still fresh. An expired or unreadable entry is deleted.
+     */
+    private @Nullable JSONObject readEntry(String productId, String productType) {
+        String key = getKey(productId, productType);
+        String raw = preferences.getString(key, null);
+        if(raw == null) return null;
+
+        JSONObject entry = parseEntry(raw);
+        if(entry == null) preferences.edit().remove(key).apply();
+        return entry;
+    }
+
+    /**
+     * Deletes every expired or unreadable entry, including those of products that are never queried again.
+     */
+    private void pruneExpired() {
+        SharedPreferences.Editor editor = null;
+
+        for(Map.Entry<String, ?> entry: preferences.getAll().entrySet()){
+            if(parseEntry(entry.getValue()) != null) continue;
+            if(editor == null) editor = preferences.edit();
+            editor.remove(entry.getKey());
+        }
+
+        if(editor != null) editor.apply();
+    }
+
+    /**
+     * Returns the cached payloads for every requested product, or null if any of them is missing or expired.
+     */
+    public @Nullable WritableArray getAll(List<String> productIds, String productType, BillingSdkProjection projection) {
+        if(!enabled) return null;
+
+        WritableArray array = new WritableNativeArray();
+        try {
+            for(String productId: productIds){
+                JSONObject entry = readEntry(productId, productType);
+                if(entry == null) return null;
+                array.pushMap(BillingSdkConverter.convertJSONObjectToMap(entry.getJSONObject(KEY_PAYLOAD), projection));
+            }
+        } catch (JSONException e) {
+            return null;
+        }
+
+        return array;
+    }
+
+    /**
+     * Whether any of the requested entries was fetched long enough ago to be refreshed in the background.
+     */
+    public boolean shouldRevalidate(List<String> productIds, String productType) {
+        long now = System.currentTimeMillis();
+
+        for(String productId: productIds){
+            JSONObject entry = readEntry(productId, productType);
+            if(entry == null || now - entry.optLong(KEY_FETCHED_AT) > revalidateAfter) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Stores the payload of a freshly queried product.
+     *
+     * @return the stored payload as JSON if it differs from a previously cached one, null otherwise.
+     */
+    public @Nullable JSONObject put(String productId, String productType, ReadableMap payload) {
+        if(!enabled) return null;
+
+        try {
+            String key = getKey(productId, productType);
+            JSONObject json = BillingSdkConverter.convertMapToJSONObject(payload);
+
+            String previousPayload = null;
+            String previousRaw = preferences.getString(key, null);
+            if(previousRaw != null) {
+                previousPayload = new JSONObject(previousRaw).optString(KEY_PAYLOAD, null);
+            }
+
+            JSONObject entry = new JSONObject();
+            entry.put(KEY_FETCHED_AT, System.currentTimeMillis());
+            entry.put(KEY_PAYLOAD, json);
+            preferences.edit().putString(key, entry.toString()).apply();
+
+            if(previousPayload != null && !previousPayload.equals(json.toString())) return json;
+            return null;
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+}
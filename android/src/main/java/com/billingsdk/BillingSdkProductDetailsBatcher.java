@@ -0,0 +1,212 @@
+package com.billingsdk;
+
+import com.android.billingclient.api.BillingClient;
+import com.android.billingclient.api.BillingResult;
+import com.android.billingclient.api.ProductDetails;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces product details requests arriving within a short window into a single
+ * queryProductDetailsAsync call per product type. Product ids that are already pending or
+ * in flight are not queried again; their result is shared by every request waiting on them.
+ * Each batch goes through the retry policy.
+ */
+public class BillingSdkProductDetailsBatcher {
+    public static final long DEFAULT_WINDOW = 10;
+
+    public interface Callback {
+        void onProductDetails(List<ProductDetails> productDetails);
+        void onError(BillingResult billingResult);
+    }
+
+    private static class Request {
+        private final List<String> productIds;
+        private final LinkedHashSet<String> remainingProductIds;
+        private final Map<String, ProductDetails> productDetails = new HashMap<>();
+        private final Callback callback;
+        private boolean done = false;
+
+        private Request(List<String> productIds, Callback callback) {
+            this.productIds = productIds;
+            this.remainingProductIds = new LinkedHashSet<>(productIds);
+            this.callback = callback;
+        }
+
+        private List<ProductDetails> getOrderedProductDetails() {
+            List<ProductDetails> list = new ArrayList<>();
+            for(String productId: new LinkedHashSet<>(productIds)){
+                ProductDetails details = productDetails.get(productId);
+                if(details != null) list.add(details);
+            }
+            return list;
+        }
+    }
+
+    private final BillingSdkConnectionManager connectionManager;
+    private final BillingSdkClient billingClient;
+    private final BillingSdkMetrics metrics;
+    private final BillingSdkRetryPolicy retryPolicy;
+    private final Executor callbackExecutor;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, LinkedHashSet<String>> pendingProductIds = new HashMap<>();
+    private final Map<String, List<Request>> waitingRequests = new HashMap<>();
+    private boolean flushScheduled = false;
+    private long window = DEFAULT_WINDOW;
+
+    public BillingSdkProductDetailsBatcher(BillingSdkConnectionManager connectionManager, BillingSdkClient billingClient, BillingSdkMetrics metrics, BillingSdkRetryPolicy retryPolicy, Executor callbackExecutor, ScheduledExecutorService scheduler) {
+        this.connectionManager = connectionManager;
+        this.billingClient = billingClient;
+        this.metrics = metrics;
+        this.retryPolicy = retryPolicy;
+        this.callbackExecutor = callbackExecutor;
+        this.scheduler = scheduler;
+    }
+
+    public synchronized void setWindow(long window) {
+        this.window = Math.max(0, window);
+    }
+
+    private static String getKey(String productId, String productType) {
+        return productType + ":" + productId;
+    }
+
+    public void query(List<String> productIds, String productType, Callback callback) {
+        Request request = new Request(productIds, callback);
+        if(request.remainingProductIds.isEmpty()){
+            callback.onProductDetails(new ArrayList<ProductDetails>());
+            return;
+        }
+
+        synchronized (this) {
+            for(String productId: request.remainingProductIds){
+                String key = getKey(productId, productType);
+                List<Request> requests = waitingRequests.get(key);
+
+                if(requests == null){
+                    requests = new ArrayList<>();
+                    waitingRequests.put(key, requests);
+
+                    LinkedHashSet<String> pending = pendingProductIds.get(productType);
+                    if(pending == null){
+                        pending = new LinkedHashSet<>();
+                        pendingProductIds.put(productType, pending);
+                    }
+                    pending.add(productId);
+                }
+
+                requests.add(request);
+            }
+
+            if(!flushScheduled && !pendingProductIds.isEmpty()){
+                flushScheduled = true;
+                scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        flush();
+                    }
+                }, window, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void flush() {
+        Map<String, LinkedHashSet<String>> batches;
+
+        synchronized (this) {
+            flushScheduled = false;
+            batches = new HashMap<>(pendingProductIds);
+            pendingProductIds.clear();
+        }
+
+        for(Map.Entry<String, LinkedHashSet<String>> batch: batches.entrySet()){
+            sendQuery(new ArrayList<>(batch.getValue()), batch.getKey());
+        }
+    }
+
+    private void sendQuery(final List<String> productIds, final String productType) {
+        retryPolicy.execute(new BillingSdkRetryPolicy.Call<List<ProductDetails>>() {
+            @Override
+            public void run(final BillingSdkRetryPolicy.Result<List<ProductDetails>> result) {
+                connectionManager.execute(new BillingSdkConnectionManager.Operation() {
+                    @Override
+                    public void run() {
+                        final long startedAt = BillingSdkMetrics.start();
+                        billingClient.queryProductDetails(productIds, productType, new BillingSdkClient.ProductDetailsListener() {
+                            @Override
+                            public void onProductDetailsResponse(BillingResult billingResult, List<ProductDetails> productDetailsList) {
+                                metrics.record(BillingSdkMetrics.QUERY_PRODUCT_DETAILS, startedAt, billingResult);
+                                result.onResult(billingResult, productDetailsList);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onError(BillingResult billingResult) {
+                        result.onResult(billingResult, null);
+                    }
+                });
+            }
+        }, new BillingSdkRetryPolicy.Result<List<ProductDetails>>() {
+            @Override
+            public void onResult(BillingResult billingResult, List<ProductDetails> productDetailsList) {
+                complete(productIds, productType, billingResult, productDetailsList);
+            }
+        });
+    }
+
+    private void complete(List<String> productIds, String productType, final BillingResult billingResult, List<ProductDetails> productDetailsList) {
+        boolean isOk = billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK;
+        Map<String, ProductDetails> productDetailsById = new HashMap<>();
+        if(isOk && productDetailsList != null){
+            for(ProductDetails productDetails: productDetailsList) productDetailsById.put(productDetails.getProductId(), productDetails);
+        }
+
+        final List<Request> succeeded = new ArrayList<>();
+        final List<Request> failed = new ArrayList<>();
+
+        synchronized (this) {
+            for(String productId: productIds){
+                List<Request> requests = waitingRequests.remove(getKey(productId, productType));
+                if(requests == null) continue;
+
+                for(Request request: requests){
+                    if(request.done) continue;
+
+                    if(!isOk){
+                        request.done = true;
+                        failed.add(request);
+                        continue;
+                    }
+
+                    ProductDetails productDetails = productDetailsById.get(productId);
+                    if(productDetails != null) request.productDetails.put(productId, productDetails);
+                    request.remainingProductIds.remove(productId);
+
+                    if(request.remainingProductIds.isEmpty()){
+                        request.done = true;
+                        succeeded.add(request);
+                    }
+                }
+            }
+        }
+
+        if(succeeded.isEmpty() && failed.isEmpty()) return;
+
+        // Callers convert and resolve the results, keep that work off the Google Play callback thread.
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for(Request request: succeeded) request.callback.onProductDetails(request.getOrderedProductDetails());
+                for(Request request: failed) request.callback.onError(billingResult);
+            }
+        });
+    }
+}
@@ -0,0 +1,185 @@
+package com.billingsdk;
+
+import androidx.annotation.Nullable;
+
+import com.android.billingclient.api.BillingClient;
+import com.android.billingclient.api.BillingFlowParams;
+import com.android.billingclient.api.ProductDetails;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thread safe, size bounded store of the queried ProductDetails used by launchBillingFlow.
+ * Entries are evicted in least recently used order once the store is full and expire after the TTL.
+ * The product type of every stored product is remembered beyond eviction so a miss can be re-queried.
+ * The ProductDetailsParams and the offer index of every offer of a product are built when it is stored,
+ * so that resolving an offer and launching the billing flow do not look up or validate offers.
+ */
+public class BillingSdkProductDetailsStore {
+    public static final int DEFAULT_MAX_SIZE = 200;
+    public static final long DEFAULT_TTL = 60 * 60 * 1000L;
+    private static final int PRODUCT_TYPES_SIZE_FACTOR = 4;
+
+    private static final String NO_OFFER = "";
+
+    private static class Entry {
+        private final ProductDetails productDetails;
+        private final long storedAt;
+        // By offer token, NO_OFFER for in app products.
+        private final Map<String, BillingFlowParams.ProductDetailsParams> params = new HashMap<>();
+        private final @Nullable BillingSdkOfferIndex offerIndex;
+
+        private Entry(ProductDetails productDetails, long storedAt) {
+            this.productDetails = productDetails;
+            this.storedAt = storedAt;
+
+            List<ProductDetails.SubscriptionOfferDetails> offers = productDetails.getSubscriptionOfferDetails();
+            if(BillingClient.ProductType.SUBS.equals(productDetails.getProductType()) && offers != null){
+                for(ProductDetails.SubscriptionOfferDetails offer: offers) params.put(offer.getOfferToken(), buildParams(productDetails, offer.getOfferToken()));
+                this.offerIndex = new BillingSdkOfferIndex(offers);
+            } else {
+                if(!BillingClient.ProductType.SUBS.equals(productDetails.getProductType())) params.put(NO_OFFER, buildParams(productDetails, null));
+                this.offerIndex = null;
+            }
+        }
+    }
+
+    private static BillingFlowParams.ProductDetailsParams buildParams(ProductDetails productDetails, @Nullable String offerToken) {
+        BillingFlowParams.ProductDetailsParams.Builder builder = BillingFlowParams.ProductDetailsParams.newBuilder();
+        builder.setProductDetails(productDetails);
+        if(offerToken != null) builder.setOfferToken(offerToken);
+        return builder.build();
+    }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if(size() <= maxSize) return false;
+            evictions++;
+            return true;
+        }
+    };
+
+    private final LinkedHashMap<String, String> productTypes = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > maxSize * PRODUCT_TYPES_SIZE_FACTOR;
+        }
+    };
+
+    private int maxSize = DEFAULT_MAX_SIZE;
+    private long ttl = DEFAULT_TTL;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public synchronized void configure(int maxSize, long ttl) {
+        this.maxSize = Math.max(1, maxSize);
+        this.ttl = ttl;
+
+        while(entries.size() > this.maxSize){
+            String eldestKey = entries.keySet().iterator().next();
+            entries.remove(eldestKey);
+            evictions++;
+        }
+    }
+
+    public synchronized void put(ProductDetails productDetails) {
+        entries.put(productDetails.getProductId(), new Entry(productDetails, System.currentTimeMillis()));
+        productTypes.put(productDetails.getProductId(), productDetails.getProductType());
+    }
+
+    private @Nullable Entry getValidEntry(String productId) {
+        Entry entry = entries.get(productId);
+        if(entry == null) return null;
+
+        if(System.currentTimeMillis() - entry.storedAt > ttl){
+            entries.remove(productId);
+            evictions++;
+            return null;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Returns the stored ProductDetails and records a hit or a miss.
+     */
+    public synchronized @Nullable ProductDetails get(String productId) {
+        Entry entry = getValidEntry(productId);
+
+        if(entry == null){
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return entry.productDetails;
+    }
+
+    /**
+     * Returns the ProductDetailsParams of the product and offer, built when the product was stored.
+     * Returns null when the product is not stored or, for a subscription, when the offer token is
+     * missing or is not one of its offers.
+     */
+    public synchronized @Nullable BillingFlowParams.ProductDetailsParams getProductDetailsParams(String productId, @Nullable String offerToken) {
+        Entry entry = getValidEntry(productId);
+        if(entry == null){
+            misses++;
+            return null;
+        }
+
+        hits++;
+        BillingFlowParams.ProductDetailsParams params = entry.params.get(offerToken == null ? NO_OFFER : offerToken);
+        if(params != null) return params;
+
+        // One time offers of in app products are not listed in the product details, Google Play validates them.
+        if(offerToken != null && !BillingClient.ProductType.SUBS.equals(entry.productDetails.getProductType()))
+            return buildParams(entry.productDetails, offerToken);
+
+        return null;
+    }
+
+    /**
+     * Returns the offer index of a stored subscription, null when the product is not stored or is
+     * not a subscription.
+     */
+    public synchronized @Nullable BillingSdkOfferIndex getOfferIndex(String productId) {
+        Entry entry = getValidEntry(productId);
+        return entry == null ? null : entry.offerIndex;
+    }
+
+    public synchronized boolean contains(String productId) {
+        return getValidEntry(productId) != null;
+    }
+
+    /**
+     * Product type of a product that has been stored at some point, even if it has since been evicted.
+     */
+    public synchronized @Nullable String getProductType(String productId) {
+        return productTypes.get(productId);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
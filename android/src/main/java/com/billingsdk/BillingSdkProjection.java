@@ -0,0 +1,91 @@
+package com.billingsdk;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Set of fields requested by JS for a converted payload. Nested fields are addressed with dotted
+ * paths (e.g. "subscriptionOfferDetails.pricingPhases.formattedPrice") and apply to every item of an array.
+ * A field listed without a nested path includes its whole value.
+ */
+public class BillingSdkProjection {
+    public static final BillingSdkProjection ALL = new BillingSdkProjection(null);
+
+    private final @Nullable Map<String, BillingSdkProjection> fields;
+    private @Nullable String key;
+
+    private BillingSdkProjection(@Nullable Map<String, BillingSdkProjection> fields) {
+        this.fields = fields;
+    }
+
+    public static BillingSdkProjection fromFields(@Nullable List<String> paths) {
+        if(paths == null || paths.isEmpty()) return ALL;
+
+        Map<String, BillingSdkProjection> fields = new HashMap<>();
+        for(String path: paths) add(fields, path);
+        return new BillingSdkProjection(fields);
+    }
+
+    private static void add(Map<String, BillingSdkProjection> fields, String path) {
+        int separatorIndex = path.indexOf('.');
+        String field = separatorIndex == -1 ? path : path.substring(0, separatorIndex);
+        BillingSdkProjection child = fields.get(field);
+
+        if(separatorIndex == -1){
+            fields.put(field, ALL);
+            return;
+        }
+
+        if(child == ALL) return;
+        if(child == null){
+            child = new BillingSdkProjection(new HashMap<String, BillingSdkProjection>());
+            fields.put(field, child);
+        }
+        add(child.fields, path.substring(separatorIndex + 1));
+    }
+
+    /**
+     * Stable string identifying the selected fields, used to key memoized payloads.
+     */
+    public String getKey() {
+        if(fields == null) return "*";
+        if(key != null) return key;
+
+        List<String> names = new ArrayList<>(fields.keySet());
+        Collections.sort(names);
+
+        StringBuilder builder = new StringBuilder("{");
+        for(String name: names){
+            if(builder.length() > 1) builder.append(',');
+            builder.append(name);
+
+            BillingSdkProjection child = fields.get(name);
+            if(child != ALL) builder.append(child.getKey());
+        }
+        key = builder.append('}').toString();
+        return key;
+    }
+
+    public boolean isAll() {
+        return fields == null;
+    }
+
+    public boolean includes(String field) {
+        return fields == null || fields.containsKey(field);
+    }
+
+    /**
+     * Projection applied to the value of an included field.
+     */
+    public BillingSdkProjection get(String field) {
+        if(fields == null) return ALL;
+
+        BillingSdkProjection child = fields.get(field);
+        return child == null ? ALL : child;
+    }
+}
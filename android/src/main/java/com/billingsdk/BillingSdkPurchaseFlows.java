@@ -0,0 +1,119 @@
+package com.billingsdk;
+
+import androidx.annotation.Nullable;
+
+import com.android.billingclient.api.BillingClient;
+import com.android.billingclient.api.BillingResult;
+import com.android.billingclient.api.Purchase;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Billing flows waiting for their outcome. A flow completes with the first purchase of one of its
+ * products reported by onPurchasesUpdated. Google Play shows one billing flow at a time, so an update
+ * that is not OK (e.g. USER_CANCELED, ITEM_ALREADY_OWNED) fails every flow in progress. Flows still
+ * waiting after their timeout are timed out; a later purchase is then only reported by PURCHASE_UPDATED.
+ */
+public class BillingSdkPurchaseFlows {
+    public static final long DEFAULT_TIMEOUT = 5 * 60 * 1000;
+
+    public interface Callback {
+        void onPurchase(BillingResult billingResult, Purchase purchase);
+        void onError(BillingResult billingResult);
+        void onTimeout();
+    }
+
+    public static class Flow {
+        private final List<String> productIds;
+        private final Callback callback;
+        private @Nullable ScheduledFuture<?> timeout;
+
+        private Flow(List<String> productIds, Callback callback) {
+            this.productIds = productIds;
+            this.callback = callback;
+        }
+    }
+
+    private final ScheduledExecutorService scheduler;
+    private final List<Flow> flows = new ArrayList<>();
+
+    public BillingSdkPurchaseFlows(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Registers a flow before it is launched, so that an update received while launching is not missed.
+     */
+    public Flow start(List<String> productIds, long timeout, Callback callback) {
+        final Flow flow = new Flow(new ArrayList<>(productIds), callback);
+
+        synchronized (this) {
+            flows.add(flow);
+            flow.timeout = scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if(remove(flow)) flow.callback.onTimeout();
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
+
+        return flow;
+    }
+
+    /**
+     * Forgets a flow that failed to launch. Returns false when it already completed.
+     */
+    public boolean cancel(Flow flow) {
+        return remove(flow);
+    }
+
+    private synchronized boolean remove(Flow flow) {
+        if(!flows.remove(flow)) return false;
+        if(flow.timeout != null) flow.timeout.cancel(false);
+        return true;
+    }
+
+    public void onPurchasesUpdated(BillingResult billingResult, @Nullable List<Purchase> purchases) {
+        boolean isOk = billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK;
+        if(isOk && purchases == null) return;
+
+        List<Flow> failed = new ArrayList<>();
+        List<Flow> purchased = new ArrayList<>();
+        List<Purchase> flowPurchases = new ArrayList<>();
+
+        synchronized (this) {
+            Iterator<Flow> iterator = flows.iterator();
+            while(iterator.hasNext()){
+                Flow flow = iterator.next();
+                Purchase purchase = isOk ? findPurchase(flow, purchases) : null;
+                if(isOk && purchase == null) continue;
+
+                iterator.remove();
+                if(flow.timeout != null) flow.timeout.cancel(false);
+
+                if(purchase == null) failed.add(flow);
+                else {
+                    purchased.add(flow);
+                    flowPurchases.add(purchase);
+                }
+            }
+        }
+
+        for(Flow flow: failed) flow.callback.onError(billingResult);
+        for(int i = 0; i < purchased.size(); i++) purchased.get(i).callback.onPurchase(billingResult, flowPurchases.get(i));
+    }
+
+    private static @Nullable Purchase findPurchase(Flow flow, List<Purchase> purchases) {
+        for(Purchase purchase: purchases){
+            for(String productId: purchase.getProducts()){
+                if(flow.productIds.contains(productId)) return purchase;
+            }
+        }
+        return null;
+    }
+}
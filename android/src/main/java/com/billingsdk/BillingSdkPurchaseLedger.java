@@ -0,0 +1,422 @@
+package com.billingsdk;
+
+import android.content.Context;
+
+import androidx.annotation.Nullable;
+
+import com.android.billingclient.api.BillingClient;
+import com.android.billingclient.api.Purchase;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeArray;
+import com.facebook.react.bridge.WritableNativeMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On device history of every purchase the SDK has seen, since Google Play Billing 8 cannot query
+ * consumed or expired purchases anymore. Each state change of a purchase is appended as a JSON line
+ * to a file, on a background thread. The latest state of each purchase is indexed in memory by
+ * purchase token, product id and purchase time. The file is compacted to one line per purchase once
+ * most of its lines are outdated.
+ */
+public class BillingSdkPurchaseLedger {
+    public static final String STATUS_PENDING = "pending";
+    public static final String STATUS_PURCHASED = "purchased";
+    public static final String STATUS_CONSUMED = "consumed";
+    // No longer returned by queryPurchasesAsync: expired, cancelled or refunded.
+    public static final String STATUS_INACTIVE = "inactive";
+
+    private static final String FILE_NAME = "com.billingsdk.purchase_ledger.jsonl";
+    private static final int MIN_COMPACTION_LINES = 256;
+
+    public static class Record {
+        public final String purchaseToken;
+        public final List<String> productIds;
+        public final @Nullable String productType;
+        public final @Nullable String orderId;
+        public final long purchaseTime;
+        public final int quantity;
+        public final String status;
+        public final boolean isAcknowledged;
+        public final boolean isAutoRenewing;
+        public final long firstSeenAt;
+        public final long updatedAt;
+
+        private Record(String purchaseToken, List<String> productIds, @Nullable String productType, @Nullable String orderId, long purchaseTime, int quantity, String status, boolean isAcknowledged, boolean isAutoRenewing, long firstSeenAt, long updatedAt) {
+            this.purchaseToken = purchaseToken;
+            this.productIds = productIds;
+            this.productType = productType;
+            this.orderId = orderId;
+            this.purchaseTime = purchaseTime;
+            this.quantity = quantity;
+            this.status = status;
+            this.isAcknowledged = isAcknowledged;
+            this.isAutoRenewing = isAutoRenewing;
+            this.firstSeenAt = firstSeenAt;
+            this.updatedAt = updatedAt;
+        }
+
+        private Record withStatus(String status, long now) {
+            return new Record(purchaseToken, productIds, productType, orderId, purchaseTime, quantity, status, isAcknowledged, isAutoRenewing, firstSeenAt, now);
+        }
+
+        private Record withProductType(String productType, long now) {
+            return new Record(purchaseToken, productIds, productType, orderId, purchaseTime, quantity, status, isAcknowledged, isAutoRenewing, firstSeenAt, now);
+        }
+
+        private boolean hasSameState(Record other) {
+            return status.equals(other.status)
+                    && (productType == null ? other.productType == null : productType.equals(other.productType))
+                    && isAcknowledged == other.isAcknowledged
+                    && isAutoRenewing == other.isAutoRenewing
+                    && quantity == other.quantity;
+        }
+
+        private static Record fromJSON(JSONObject json) throws JSONException {
+            JSONArray productIdsJson = json.getJSONArray("productIds");
+            List<String> productIds = new ArrayList<>();
+            for(int i = 0; i < productIdsJson.length(); i++) productIds.add(productIdsJson.getString(i));
+
+            return new Record(
+                    json.getString("purchaseToken"),
+                    productIds,
+                    json.has("productType") ? json.getString("productType") : null,
+                    json.has("orderId") ? json.getString("orderId") : null,
+                    json.getLong("purchaseTime"),
+                    json.getInt("quantity"),
+                    json.getString("status"),
+                    json.getBoolean("isAcknowledged"),
+                    json.getBoolean("isAutoRenewing"),
+                    json.getLong("firstSeenAt"),
+                    json.getLong("updatedAt"));
+        }
+
+        private JSONObject toJSON() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("purchaseToken", purchaseToken);
+            json.put("productIds", new JSONArray(productIds));
+            if(productType != null) json.put("productType", productType);
+            if(orderId != null) json.put("orderId", orderId);
+            json.put("purchaseTime", purchaseTime);
+            json.put("quantity", quantity);
+            json.put("status", status);
+            json.put("isAcknowledged", isAcknowledged);
+            json.put("isAutoRenewing", isAutoRenewing);
+            json.put("firstSeenAt", firstSeenAt);
+            json.put("updatedAt", updatedAt);
+            return json;
+        }
+
+        public WritableMap toMap() {
+            WritableArray products = new WritableNativeArray();
+            for(String productId: productIds) products.pushString(productId);
+
+            WritableMap json = new WritableNativeMap();
+            json.putString("purchaseToken", purchaseToken);
+            json.putArray("products", products);
+            if(productType != null) json.putString("productType", productType);
+            else json.putNull("productType");
+            if(orderId != null) json.putString("orderId", orderId);
+            else json.putNull("orderId");
+            json.putDouble("purchaseTime", purchaseTime);
+            json.putInt("quantity", quantity);
+            json.putString("status", status);
+            json.putBoolean("isAcknowledged", isAcknowledged);
+            json.putBoolean("isAutoRenewing", isAutoRenewing);
+            json.putDouble("firstSeenAt", firstSeenAt);
+            json.putDouble("updatedAt", updatedAt);
+            return json;
+        }
+    }
+
+    private final File file;
+    // Writes appended after close are dropped.
+    private final ThreadPoolExecutor writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadPoolExecutor.DiscardPolicy());
+    private final Map<String, Record> records = new HashMap<>();
+    private final Map<String, Set<String>> purchaseTokensByProductId = new HashMap<>();
+    // Purchase tokens of the last full list of each product type synced in this process.
+    private final Map<String, Set<String>> syncedPurchaseTokens = new HashMap<>();
+    private final TreeMap<Long, Set<String>> purchaseTokensByPurchaseTime = new TreeMap<>();
+    private boolean loaded = false;
+    private int lineCount = 0;
+
+    public BillingSdkPurchaseLedger(Context context) {
+        this.file = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+    }
+
+    private void ensureLoaded() {
+        if(loaded) return;
+        loaded = true;
+        if(!file.exists()) return;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while((line = reader.readLine()) != null){
+                lineCount++;
+                try {
+                    index(Record.fromJSON(new JSONObject(line)));
+                } catch (JSONException ignored) {
+                    // A line truncated by process death, the previous state of the purchase is kept.
+                }
+            }
+        } catch (IOException ignored) {}
+    }
+
+    private void index(Record record) {
+        Record previous = records.put(record.purchaseToken, record);
+        if(previous != null) return;
+
+        for(String productId: record.productIds) getOrCreate(purchaseTokensByProductId, productId).add(record.purchaseToken);
+        getOrCreate(purchaseTokensByPurchaseTime, record.purchaseTime).add(record.purchaseToken);
+    }
+
+    private static <K> Set<String> getOrCreate(Map<K, Set<String>> index, K key) {
+        Set<String> purchaseTokens = index.get(key);
+        if(purchaseTokens == null){
+            purchaseTokens = new LinkedHashSet<>();
+            index.put(key, purchaseTokens);
+        }
+        return purchaseTokens;
+    }
+
+    private static String getStatus(int purchaseState) {
+        return purchaseState == Purchase.PurchaseState.PENDING ? STATUS_PENDING : STATUS_PURCHASED;
+    }
+
+    private Record createRecord(BillingSdkPurchaseStateStore.Snapshot snapshot, long now) {
+        Purchase purchase = snapshot.purchase;
+        Record previous = records.get(purchase.getPurchaseToken());
+
+        return new Record(
+                purchase.getPurchaseToken(),
+                purchase.getProducts(),
+                snapshot.productType,
+                purchase.getOrderId(),
+                purchase.getPurchaseTime(),
+                snapshot.quantity,
+                getStatus(snapshot.purchaseState),
+                snapshot.isAcknowledged,
+                snapshot.isAutoRenewing,
+                previous != null ? previous.firstSeenAt : now,
+                now);
+    }
+
+    /**
+     * Records the purchases added, changed and removed since they were last observed. Purchases
+     * whose state did not change since they were last recorded are not appended again.
+     */
+    public synchronized void apply(BillingSdkPurchaseStateStore.Diff diff) {
+        ensureLoaded();
+        long now = System.currentTimeMillis();
+        List<Record> changedRecords = new ArrayList<>();
+
+        for(BillingSdkPurchaseStateStore.Snapshot snapshot: diff.added) changedRecords.add(createRecord(snapshot, now));
+        for(BillingSdkPurchaseStateStore.Change change: diff.changed) changedRecords.add(createRecord(change.current, now));
+
+        for(BillingSdkPurchaseStateStore.Snapshot snapshot: diff.removed){
+            Record previous = records.get(snapshot.purchase.getPurchaseToken());
+            // Consumed purchases are recorded by consume and also leave the active purchases.
+            if(previous == null || STATUS_CONSUMED.equals(previous.status)) continue;
+            changedRecords.add(previous.withStatus(STATUS_INACTIVE, now));
+        }
+
+        append(changedRecords);
+    }
+
+    /**
+     * Reconciles the ledger with the complete list of active purchases of a product type returned by
+     * queryPurchasesAsync. Unlike the purchase diffs, this also marks inactive the purchases recorded
+     * by a previous process that expired or were refunded since. Records of unknown product type get
+     * the type of the list they are found in, and are marked inactive once neither list contains them.
+     */
+    public synchronized void replace(String productType, Collection<Purchase> activePurchases) {
+        ensureLoaded();
+        long now = System.currentTimeMillis();
+        Set<String> activeTokens = new HashSet<>();
+        for(Purchase purchase: activePurchases) activeTokens.add(purchase.getPurchaseToken());
+
+        syncedPurchaseTokens.put(productType, activeTokens);
+
+        List<Record> changedRecords = new ArrayList<>();
+        for(Record record: records.values()){
+            if(activeTokens.contains(record.purchaseToken)){
+                if(record.productType == null) changedRecords.add(record.withProductType(productType, now));
+                continue;
+            }
+
+            boolean isMissing = productType.equals(record.productType)
+                    || (record.productType == null && isMissingFromSyncedLists(record.purchaseToken));
+            if(isMissing && (STATUS_PURCHASED.equals(record.status) || STATUS_PENDING.equals(record.status)))
+                changedRecords.add(record.withStatus(STATUS_INACTIVE, now));
+        }
+
+        append(changedRecords);
+    }
+
+    /**
+     * Whether a record of unknown product type, recorded from a purchase update before its product
+     * was queried, is missing from both the in-app and the subscription lists synced in this process.
+     * Until both lists are synced, it may belong to the one not synced yet.
+     */
+    private boolean isMissingFromSyncedLists(String purchaseToken) {
+        for(String productType: new String[]{ BillingClient.ProductType.INAPP, BillingClient.ProductType.SUBS }){
+            Set<String> purchaseTokens = syncedPurchaseTokens.get(productType);
+            if(purchaseTokens == null || purchaseTokens.contains(purchaseToken)) return false;
+        }
+        return true;
+    }
+
+    public synchronized void consume(String purchaseToken) {
+        ensureLoaded();
+        Record previous = records.get(purchaseToken);
+        if(previous == null) return;
+
+        append(Collections.singletonList(previous.withStatus(STATUS_CONSUMED, System.currentTimeMillis())));
+    }
+
+    private void append(List<Record> changedRecords) {
+        final StringBuilder lines = new StringBuilder();
+
+        for(Record record: changedRecords){
+            Record previous = records.get(record.purchaseToken);
+            if(previous != null && previous.hasSameState(record)) continue;
+
+            try {
+                lines.append(record.toJSON().toString()).append('\n');
+            } catch (JSONException e) {
+                continue;
+            }
+            index(record);
+            lineCount++;
+        }
+
+        if(lines.length() == 0) return;
+
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(file, lines.toString(), true);
+            }
+        });
+
+        if(lineCount > MIN_COMPACTION_LINES && lineCount > records.size() * 2) compact();
+    }
+
+    /**
+     * Rewrites the file with only the latest line of each purchase.
+     */
+    private void compact() {
+        final StringBuilder lines = new StringBuilder();
+        for(Record record: records.values()){
+            try {
+                lines.append(record.toJSON().toString()).append('\n');
+            } catch (JSONException ignored) {}
+        }
+        lineCount = records.size();
+
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                File compactedFile = new File(file.getPath() + ".tmp");
+                if(write(compactedFile, lines.toString(), false)) compactedFile.renameTo(file);
+            }
+        });
+    }
+
+    /**
+     * Stops the writer thread once the writes already appended are done.
+     */
+    public void close() {
+        writer.shutdown();
+    }
+
+    private static boolean write(File target, String lines, boolean append) {
+        try (Writer fileWriter = new FileWriter(target, append)) {
+            fileWriter.write(lines);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the latest state of the recorded purchases matching every given filter, most recent
+     * purchase first. A null filter matches every purchase.
+     *
+     * @param startTime Minimum purchase time in milliseconds, inclusive.
+     * @param endTime Maximum purchase time in milliseconds, inclusive.
+     */
+    public synchronized List<Record> query(@Nullable String productId, @Nullable String purchaseToken, long startTime, long endTime) {
+        ensureLoaded();
+        List<Record> result = new ArrayList<>();
+
+        if(purchaseToken != null){
+            Record record = records.get(purchaseToken);
+            if(record != null && matches(record, productId, startTime, endTime)) result.add(record);
+            return result;
+        }
+
+        if(productId != null){
+            Set<String> purchaseTokens = purchaseTokensByProductId.get(productId);
+            if(purchaseTokens == null) return result;
+
+            for(String token: purchaseTokens){
+                Record record = records.get(token);
+                if(record != null && matches(record, null, startTime, endTime)) result.add(record);
+            }
+            Collections.sort(result, new Comparator<Record>() {
+                @Override
+                public int compare(Record a, Record b) {
+                    return Long.compare(b.purchaseTime, a.purchaseTime);
+                }
+            });
+            return result;
+        }
+
+        if(startTime > endTime) return result;
+
+        NavigableMap<Long, Set<String>> range = purchaseTokensByPurchaseTime.subMap(startTime, true, endTime, true).descendingMap();
+        for(Collection<String> purchaseTokens: range.values()){
+            for(String token: purchaseTokens){
+                Record record = records.get(token);
+                if(record != null) result.add(record);
+            }
+        }
+        return result;
+    }
+
+    private static boolean matches(Record record, @Nullable String productId, long startTime, long endTime) {
+        if(productId != null && !record.productIds.contains(productId)) return false;
+        return record.purchaseTime >= startTime && record.purchaseTime <= endTime;
+    }
+
+    public synchronized int size() {
+        ensureLoaded();
+        return records.size();
+    }
+}
@@ -0,0 +1,155 @@
+package com.billingsdk;
+
+import androidx.annotation.Nullable;
+
+import com.android.billingclient.api.Purchase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks the purchases known to the SDK by purchase token and computes what changed between two
+ * observations, so JS receives added, changed and removed purchases instead of full lists.
+ */
+public class BillingSdkPurchaseStateStore {
+    public static class Snapshot {
+        public final Purchase purchase;
+        public final @Nullable String productType;
+        public final int purchaseState;
+        public final boolean isAcknowledged;
+        public final boolean isAutoRenewing;
+        public final int quantity;
+
+        private Snapshot(Purchase purchase, @Nullable String productType, boolean isAcknowledged) {
+            this.purchase = purchase;
+            this.productType = productType;
+            this.purchaseState = purchase.getPurchaseState();
+            this.isAcknowledged = isAcknowledged;
+            this.isAutoRenewing = purchase.isAutoRenewing();
+            this.quantity = purchase.getQuantity();
+        }
+
+        private Snapshot(Purchase purchase, @Nullable String productType) {
+            this(purchase, productType, purchase.isAcknowledged());
+        }
+
+        public String getProductId() {
+            return purchase.getProducts().get(0);
+        }
+
+        private boolean hasSameState(Snapshot other) {
+            return purchaseState == other.purchaseState
+                    && isAcknowledged == other.isAcknowledged
+                    && isAutoRenewing == other.isAutoRenewing
+                    && quantity == other.quantity;
+        }
+    }
+
+    public static class Change {
+        public final Snapshot current;
+        public final Snapshot previous;
+
+        private Change(Snapshot current, Snapshot previous) {
+            this.current = current;
+            this.previous = previous;
+        }
+    }
+
+    public static class Diff {
+        public final List<Snapshot> added = new ArrayList<>();
+        public final List<Change> changed = new ArrayList<>();
+        public final List<Snapshot> removed = new ArrayList<>();
+
+        public boolean isEmpty() {
+            return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+        }
+    }
+
+    public interface ProductTypeResolver {
+        @Nullable String getProductType(String productId);
+    }
+
+    private final Map<String, Snapshot> purchases = new HashMap<>();
+    private final ProductTypeResolver productTypeResolver;
+
+    public BillingSdkPurchaseStateStore(ProductTypeResolver productTypeResolver) {
+        this.productTypeResolver = productTypeResolver;
+    }
+
+    private void apply(Purchase purchase, @Nullable String productType, Diff diff) {
+        String purchaseToken = purchase.getPurchaseToken();
+        Snapshot previous = purchases.get(purchaseToken);
+
+        if(productType == null) productType = previous != null ? previous.productType : productTypeResolver.getProductType(purchase.getProducts().get(0));
+        Snapshot current = new Snapshot(purchase, productType);
+        purchases.put(purchaseToken, current);
+
+        if(previous == null) diff.added.add(current);
+        else if(!previous.hasSameState(current)) diff.changed.add(new Change(current, previous));
+    }
+
+    /**
+     * Applies purchases reported by onPurchasesUpdated. These only contain the updated purchases,
+     * so nothing is considered removed.
+     */
+    public synchronized Diff update(Collection<Purchase> updatedPurchases) {
+        Diff diff = new Diff();
+        for(Purchase purchase: updatedPurchases) apply(purchase, null, diff);
+        return diff;
+    }
+
+    /**
+     * Applies the complete list of active purchases of a product type returned by queryPurchasesAsync.
+     * Known purchases of that type which are not in the list anymore are reported as removed.
+     */
+    public synchronized Diff replace(String productType, Collection<Purchase> activePurchases) {
+        Diff diff = new Diff();
+        Set<String> activeTokens = new HashSet<>();
+
+        for(Purchase purchase: activePurchases){
+            activeTokens.add(purchase.getPurchaseToken());
+            apply(purchase, productType, diff);
+        }
+
+        Iterator<Map.Entry<String, Snapshot>> iterator = purchases.entrySet().iterator();
+        while(iterator.hasNext()){
+            Map.Entry<String, Snapshot> entry = iterator.next();
+            if(!productType.equals(entry.getValue().productType) || activeTokens.contains(entry.getKey())) continue;
+
+            diff.removed.add(entry.getValue());
+            iterator.remove();
+        }
+
+        return diff;
+    }
+
+    /**
+     * Marks a purchase as acknowledged after a successful acknowledgePurchase call.
+     */
+    public synchronized Diff acknowledge(String purchaseToken) {
+        Diff diff = new Diff();
+        Snapshot previous = purchases.get(purchaseToken);
+        if(previous == null || previous.isAcknowledged) return diff;
+
+        Snapshot current = new Snapshot(previous.purchase, previous.productType, true);
+        purchases.put(purchaseToken, current);
+        diff.changed.add(new Change(current, previous));
+        return diff;
+    }
+
+    /**
+     * Removes a purchase after a successful consume call.
+     */
+    public synchronized Diff consume(String purchaseToken) {
+        Diff diff = new Diff();
+        Snapshot previous = purchases.remove(purchaseToken);
+        if(previous != null) diff.removed.add(previous);
+        return diff;
+    }
+}
@@ -0,0 +1,114 @@
+package com.billingsdk;
+
+import android.text.TextUtils;
+import android.util.Base64;
+
+import androidx.annotation.Nullable;
+
+import com.android.billingclient.api.Purchase;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Verifies the signature of purchases against the Base64 encoded RSA public key of the app, found in
+ * the Play Console under Monetization setup. Signature instances are cached per thread and results
+ * are memoized by signature and signed data, so a purchase is only verified once.
+ */
+public class BillingSdkPurchaseVerifier {
+    private static final String KEY_ALGORITHM = "RSA";
+    private static final String SIGNATURE_ALGORITHM = "SHA1withRSA";
+    private static final int MAX_RESULTS = 500;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final ThreadLocal<Signature> signatures = new ThreadLocal<Signature>() {
+        @Override
+        protected Signature initialValue() {
+            try {
+                return Signature.getInstance(SIGNATURE_ALGORITHM);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    private final LinkedHashMap<String, Boolean> results = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_RESULTS;
+        }
+    };
+
+    private volatile @Nullable PublicKey publicKey;
+
+    /**
+     * Sets the key purchases are verified with, or disables verification when null.
+     *
+     * @throws IllegalArgumentException when the key is not a Base64 encoded X.509 RSA public key.
+     */
+    public void setPublicKey(@Nullable String base64PublicKey) {
+        PublicKey key = null;
+
+        if(base64PublicKey != null){
+            try {
+                byte[] encodedKey = Base64.decode(base64PublicKey, Base64.DEFAULT);
+                key = KeyFactory.getInstance(KEY_ALGORITHM).generatePublic(new X509EncodedKeySpec(encodedKey));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalArgumentException("Invalid public key: " + e.getMessage());
+            }
+        }
+
+        synchronized (results) {
+            publicKey = key;
+            results.clear();
+        }
+    }
+
+    public boolean isEnabled() {
+        return publicKey != null;
+    }
+
+    /**
+     * Returns whether the purchase was signed by Google Play for this app, or null when verification
+     * is disabled.
+     */
+    public @Nullable Boolean verify(Purchase purchase) {
+        PublicKey key = publicKey;
+        if(key == null) return null;
+
+        // Keyed on the signed data itself, so that a genuine signature reused with other data is verified again.
+        String resultKey = purchase.getSignature() + ":" + purchase.getOriginalJson();
+        synchronized (results) {
+            Boolean result = results.get(resultKey);
+            if(result != null) return result;
+        }
+
+        boolean verified = verify(key, purchase.getOriginalJson(), purchase.getSignature());
+
+        synchronized (results) {
+            // The key may have been replaced while verifying.
+            if(key == publicKey) results.put(resultKey, verified);
+        }
+        return verified;
+    }
+
+    private static boolean verify(PublicKey key, String signedData, String base64Signature) {
+        if(TextUtils.isEmpty(signedData) || TextUtils.isEmpty(base64Signature)) return false;
+
+        try {
+            Signature signature = signatures.get();
+            signature.initVerify(key);
+            signature.update(signedData.getBytes(UTF_8));
+            return signature.verify(Base64.decode(base64Signature, Base64.DEFAULT));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
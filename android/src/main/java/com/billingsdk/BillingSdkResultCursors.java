@@ -0,0 +1,138 @@
+package com.billingsdk;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeMap;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Holds large query results natively and hands them to JS one page at a time. A page is only
+ * converted when JS fetches it, so the whole result never crosses the bridge at once. Cursors are
+ * released when their last page is fetched, when JS releases them, or after MAX_IDLE_TIME without
+ * being read. At most MAX_CURSORS are kept, the least recently read one is released first.
+ */
+public class BillingSdkResultCursors {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final long MAX_IDLE_TIME = 5 * 60 * 1000;
+    public static final int MAX_CURSORS = 16;
+
+    public interface PageConverter<T> {
+        ReadableArray convert(List<T> page);
+    }
+
+    private static class Cursor<T> {
+        private final List<T> items;
+        private final int pageSize;
+        private final PageConverter<T> converter;
+        private int offset = 0;
+        private long readAt = SystemClock.elapsedRealtime();
+
+        private Cursor(List<T> items, int pageSize, PageConverter<T> converter) {
+            this.items = items;
+            this.pageSize = pageSize;
+            this.converter = converter;
+        }
+
+        private boolean hasMore() {
+            return offset < items.size();
+        }
+
+        private ReadableArray nextPage() {
+            int end = Math.min(offset + pageSize, items.size());
+            List<T> page = new ArrayList<>(items.subList(offset, end));
+            offset = end;
+            readAt = SystemClock.elapsedRealtime();
+            return converter.convert(page);
+        }
+    }
+
+    // Access ordered, the first cursor is the least recently read one.
+    private final Map<String, Cursor<?>> cursors = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Opens a cursor on the items and returns its first page as { cursor, items, total, hasMore }.
+     * No cursor is kept when the first page holds every item, `cursor` is then null.
+     */
+    public <T> WritableMap open(List<T> items, int pageSize, PageConverter<T> converter) {
+        Cursor<T> cursor = new Cursor<>(new ArrayList<>(items), Math.max(1, pageSize), converter);
+        ReadableArray page = cursor.nextPage();
+
+        String cursorId = null;
+        if(cursor.hasMore()){
+            cursorId = UUID.randomUUID().toString();
+            synchronized (this) {
+                evictIdle();
+                // Only opening a cursor evicts a readable one, the least recently read.
+                Iterator<Cursor<?>> iterator = cursors.values().iterator();
+                while(cursors.size() >= MAX_CURSORS && iterator.hasNext()){
+                    iterator.next();
+                    iterator.remove();
+                }
+                cursors.put(cursorId, cursor);
+            }
+        }
+
+        return createPage(cursorId, page, cursor);
+    }
+
+    /**
+     * Converts and returns the next page of the cursor, or null when the cursor is unknown, already
+     * fully read or expired.
+     */
+    public @Nullable WritableMap fetchPage(String cursorId) {
+        Cursor<?> cursor;
+        synchronized (this) {
+            evictIdle();
+            cursor = cursors.get(cursorId);
+        }
+        if(cursor == null) return null;
+
+        ReadableArray page;
+        boolean hasMore;
+        synchronized (cursor) {
+            if(!cursor.hasMore()) return null;
+            page = cursor.nextPage();
+            hasMore = cursor.hasMore();
+        }
+
+        if(!hasMore) release(cursorId);
+        return createPage(hasMore ? cursorId : null, page, cursor);
+    }
+
+    public synchronized void release(String cursorId) {
+        cursors.remove(cursorId);
+    }
+
+    public synchronized int size() {
+        return cursors.size();
+    }
+
+    private void evictIdle() {
+        long now = SystemClock.elapsedRealtime();
+        Iterator<Cursor<?>> iterator = cursors.values().iterator();
+
+        while(iterator.hasNext()){
+            if(now - iterator.next().readAt > MAX_IDLE_TIME) iterator.remove();
+        }
+    }
+
+    private static WritableMap createPage(@Nullable String cursorId, ReadableArray page, Cursor<?> cursor) {
+        WritableMap json = new WritableNativeMap();
+        if(cursorId != null) json.putString("cursor", cursorId);
+        else json.putNull("cursor");
+        json.putArray("items", page);
+        json.putInt("total", cursor.items.size());
+        json.putBoolean("hasMore", cursorId != null);
+        return json;
+    }
+}
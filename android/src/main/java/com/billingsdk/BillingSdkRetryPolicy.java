@@ -0,0 +1,263 @@
+package com.billingsdk;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.android.billingclient.api.BillingClient;
+import com.android.billingclient.api.BillingResult;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeMap;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retry policy of the idempotent Google Play queries. Calls failing with a transient response code (see
+ * BillingSdkPendingOperationQueue.isRetriable) are retried with full jitter exponential backoff. After
+ * failureThreshold transient failures in a row the circuit opens: calls fail fast with the last failure
+ * for openDuration, then a single probe call decides whether it closes again. When hedgeDelay is set, a
+ * call still unanswered after that delay is sent a second time and the first answer wins.
+ */
+public class BillingSdkRetryPolicy {
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_BASE_DELAY = 250;
+    public static final long DEFAULT_MAX_DELAY = 5000;
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_OPEN_DURATION = 30 * 1000;
+    public static final long DEFAULT_HEDGE_DELAY = 0;
+
+    private static final String STATE_CLOSED = "closed";
+    private static final String STATE_OPEN = "open";
+    private static final String STATE_HALF_OPEN = "halfOpen";
+
+    public interface Result<T> {
+        void onResult(BillingResult billingResult, @Nullable T value);
+    }
+
+    /**
+     * One attempt of a call. It may run several times, concurrently when hedging.
+     */
+    public interface Call<T> {
+        void run(Result<T> result);
+    }
+
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong shortCircuits = new AtomicLong();
+    private final AtomicLong circuitOpens = new AtomicLong();
+
+    private volatile boolean enabled = false;
+    private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private volatile long baseDelay = DEFAULT_BASE_DELAY;
+    private volatile long maxDelay = DEFAULT_MAX_DELAY;
+    private volatile int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private volatile long openDuration = DEFAULT_OPEN_DURATION;
+    private volatile long hedgeDelay = DEFAULT_HEDGE_DELAY;
+
+    private String state = STATE_CLOSED;
+    private int consecutiveFailures = 0;
+    private long openUntil = 0;
+    private boolean probing = false;
+    private @Nullable BillingResult lastFailure;
+
+    public BillingSdkRetryPolicy(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * A failureThreshold of 0 disables the circuit breaker, a hedgeDelay of 0 disables hedging.
+     */
+    public synchronized void configure(boolean enabled, int maxAttempts, long baseDelay, long maxDelay, int failureThreshold, long openDuration, long hedgeDelay) {
+        this.enabled = enabled;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelay = Math.max(0, baseDelay);
+        this.maxDelay = Math.max(this.baseDelay, maxDelay);
+        this.failureThreshold = Math.max(0, failureThreshold);
+        this.openDuration = Math.max(0, openDuration);
+        this.hedgeDelay = Math.max(0, hedgeDelay);
+        close();
+    }
+
+    public <T> void execute(Call<T> call, Result<T> result) {
+        if(!enabled){
+            call.run(result);
+            return;
+        }
+
+        calls.incrementAndGet();
+        BillingResult rejection = acquire();
+        if(rejection != null){
+            shortCircuits.incrementAndGet();
+            result.onResult(rejection, null);
+            return;
+        }
+
+        new Execution<>(call, result).launch(false);
+    }
+
+    private class Execution<T> {
+        private final Call<T> call;
+        private final Result<T> result;
+        private int attempts = 0;
+        private int inFlight = 0;
+        private boolean done = false;
+
+        private Execution(Call<T> call, Result<T> result) {
+            this.call = call;
+            this.result = result;
+        }
+
+        private void launch(final boolean hedge) {
+            synchronized (this) {
+                if(done) return;
+                attempts++;
+                inFlight++;
+            }
+
+            call.run(new Result<T>() {
+                @Override
+                public void onResult(BillingResult billingResult, @Nullable T value) {
+                    complete(hedge, billingResult, value);
+                }
+            });
+
+            if(!hedge && hedgeDelay > 0) scheduleHedge();
+        }
+
+        private void scheduleHedge() {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (Execution.this) {
+                        if(done || inFlight == 0 || attempts >= maxAttempts) return;
+                    }
+                    if(!isClosed()) return;
+
+                    hedges.incrementAndGet();
+                    launch(true);
+                }
+            }, hedgeDelay, TimeUnit.MILLISECONDS);
+        }
+
+        private void complete(boolean hedge, BillingResult billingResult, @Nullable T value) {
+            boolean isRetriable = BillingSdkPendingOperationQueue.isRetriable(billingResult.getResponseCode());
+            onAttemptResult(billingResult, isRetriable);
+
+            boolean retry;
+            final long delay;
+            synchronized (this) {
+                if(done) return;
+                inFlight--;
+
+                // A hedged attempt still running may yet succeed.
+                if(isRetriable && inFlight > 0) return;
+
+                retry = isRetriable && attempts < maxAttempts && isClosed();
+                if(!retry) done = true;
+                delay = retry ? getDelay(attempts) : 0;
+            }
+
+            if(retry){
+                retries.incrementAndGet();
+                scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        launch(false);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            if(hedge && billingResult.getResponseCode() == BillingClient.BillingResponseCode.OK) hedgeWins.incrementAndGet();
+            result.onResult(billingResult, value);
+        }
+    }
+
+    private long getDelay(int attempts) {
+        long delay = baseDelay << Math.min(attempts - 1, 30);
+        if(delay <= 0 || delay > maxDelay) delay = maxDelay;
+        // Full jitter, so that calls failing together spread their retries over the whole delay.
+        return ThreadLocalRandom.current().nextLong(delay + 1);
+    }
+
+    /**
+     * Returns the result a new call fails fast with, or null when it may run. Once the circuit has been
+     * open for openDuration, the first call is let through as a probe.
+     */
+    private synchronized @Nullable BillingResult acquire() {
+        if(STATE_CLOSED.equals(state)) return null;
+
+        if(STATE_OPEN.equals(state) && SystemClock.elapsedRealtime() >= openUntil){
+            state = STATE_HALF_OPEN;
+            probing = false;
+        }
+
+        if(STATE_HALF_OPEN.equals(state) && !probing){
+            probing = true;
+            return null;
+        }
+
+        int responseCode = lastFailure != null ? lastFailure.getResponseCode() : BillingClient.BillingResponseCode.SERVICE_UNAVAILABLE;
+        return BillingResult.newBuilder()
+                .setResponseCode(responseCode)
+                .setDebugMessage("Google Play is failing, the call was not attempted."
+                        + (lastFailure != null ? " Last error: " + lastFailure.getDebugMessage() : ""))
+                .build();
+    }
+
+    private synchronized boolean isClosed() {
+        return STATE_CLOSED.equals(state);
+    }
+
+    private synchronized void onAttemptResult(BillingResult billingResult, boolean isRetriable) {
+        if(!isRetriable){
+            if(!STATE_OPEN.equals(state)) close();
+            return;
+        }
+
+        lastFailure = billingResult;
+        consecutiveFailures++;
+
+        boolean trips = STATE_HALF_OPEN.equals(state) || (failureThreshold > 0 && consecutiveFailures >= failureThreshold);
+        if(trips && !STATE_OPEN.equals(state)){
+            state = STATE_OPEN;
+            openUntil = SystemClock.elapsedRealtime() + openDuration;
+            circuitOpens.incrementAndGet();
+        }
+    }
+
+    private void close() {
+        state = STATE_CLOSED;
+        consecutiveFailures = 0;
+        probing = false;
+        lastFailure = null;
+    }
+
+    public void resetCounters() {
+        calls.set(0);
+        retries.set(0);
+        hedges.set(0);
+        hedgeWins.set(0);
+        shortCircuits.set(0);
+        circuitOpens.set(0);
+    }
+
+    public synchronized WritableMap toMap() {
+        WritableMap json = new WritableNativeMap();
+        json.putBoolean("enabled", enabled);
+        json.putString("circuit", state);
+        json.putDouble("calls", calls.get());
+        json.putDouble("retries", retries.get());
+        json.putDouble("hedges", hedges.get());
+        json.putDouble("hedgeWins", hedgeWins.get());
+        json.putDouble("shortCircuits", shortCircuits.get());
+        json.putDouble("circuitOpens", circuitOpens.get());
+        return json;
+    }
+}
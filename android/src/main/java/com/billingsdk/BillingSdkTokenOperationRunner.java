@@ -0,0 +1,119 @@
+package com.billingsdk;
+
+import com.android.billingclient.api.BillingResult;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a purchase token operation (acknowledge or consume) at most once per token at a time: callers
+ * asking for a token that is already in flight wait for the same Google Play call. Batches of tokens are
+ * run with a bounded number of concurrent calls and report a single result per token.
+ */
+public class BillingSdkTokenOperationRunner {
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    public interface Operation {
+        void execute(String purchaseToken, Callback callback);
+    }
+
+    public interface Callback {
+        void onResult(BillingResult billingResult);
+    }
+
+    public interface BatchCallback {
+        void onResults(Map<String, BillingResult> results);
+    }
+
+    private final Operation operation;
+    private final Map<String, List<Callback>> inFlight = new HashMap<>();
+
+    public BillingSdkTokenOperationRunner(Operation operation) {
+        this.operation = operation;
+    }
+
+    public void run(final String purchaseToken, Callback callback) {
+        synchronized (this) {
+            List<Callback> callbacks = inFlight.get(purchaseToken);
+            if(callbacks != null){
+                callbacks.add(callback);
+                return;
+            }
+
+            callbacks = new ArrayList<>();
+            callbacks.add(callback);
+            inFlight.put(purchaseToken, callbacks);
+        }
+
+        operation.execute(purchaseToken, new Callback() {
+            @Override
+            public void onResult(BillingResult billingResult) {
+                List<Callback> callbacks;
+                synchronized (BillingSdkTokenOperationRunner.this) {
+                    callbacks = inFlight.remove(purchaseToken);
+                }
+                if(callbacks == null) return;
+
+                for(Callback callback: callbacks) callback.onResult(billingResult);
+            }
+        });
+    }
+
+    public void runAll(List<String> purchaseTokens, int concurrency, BatchCallback callback) {
+        new Batch(new LinkedHashSet<>(purchaseTokens), Math.max(1, concurrency), callback).next();
+    }
+
+    private class Batch {
+        private final Iterator<String> pendingTokens;
+        private final int tokenCount;
+        private final int concurrency;
+        private final BatchCallback callback;
+        private final Map<String, BillingResult> results = new LinkedHashMap<>();
+        private int activeCount = 0;
+        private boolean done = false;
+
+        private Batch(LinkedHashSet<String> purchaseTokens, int concurrency, BatchCallback callback) {
+            this.pendingTokens = new ArrayList<>(purchaseTokens).iterator();
+            this.tokenCount = purchaseTokens.size();
+            this.concurrency = concurrency;
+            this.callback = callback;
+        }
+
+        private void next() {
+            List<String> tokensToStart = new ArrayList<>();
+            boolean isComplete;
+
+            synchronized (this) {
+                while(activeCount < concurrency && pendingTokens.hasNext()){
+                    tokensToStart.add(pendingTokens.next());
+                    activeCount++;
+                }
+                isComplete = !done && activeCount == 0 && results.size() == tokenCount;
+                if(isComplete) done = true;
+            }
+
+            if(isComplete){
+                callback.onResults(results);
+                return;
+            }
+
+            for(final String purchaseToken: tokensToStart){
+                run(purchaseToken, new Callback() {
+                    @Override
+                    public void onResult(BillingResult billingResult) {
+                        synchronized (Batch.this) {
+                            results.put(purchaseToken, billingResult);
+                            activeCount--;
+                        }
+                        next();
+                    }
+                });
+            }
+        }
+    }
+}
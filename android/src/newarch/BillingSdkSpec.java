@@ -0,0 +1,13 @@
+package com.billingsdk;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+
+/**
+ * New architecture base of BillingSdkModule: the TurboModule spec generated by codegen from
+ * src/NativeBillingSdk.ts.
+ */
+abstract class BillingSdkSpec extends NativeBillingSdkSpec {
+  BillingSdkSpec(ReactApplicationContext context) {
+    super(context);
+  }
+}
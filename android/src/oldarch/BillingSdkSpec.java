@@ -0,0 +1,14 @@
+package com.billingsdk;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+
+/**
+ * Old architecture base of BillingSdkModule: a bridge module exposing the methods annotated
+ * with @ReactMethod.
+ */
+abstract class BillingSdkSpec extends ReactContextBaseJavaModule {
+  BillingSdkSpec(ReactApplicationContext context) {
+    super(context);
+  }
+}
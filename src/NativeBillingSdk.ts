@@ -0,0 +1,64 @@
+/* eslint-disable @typescript-eslint/ban-types */
+import type { TurboModule } from 'react-native';
+import { TurboModuleRegistry } from 'react-native';
+
+/**
+ * Codegen spec of the native BillingSdk module. Payloads are typed as Object here and narrowed by
+ * BillingSdkAndroidTypes.IBillingSdkAndroidNative.
+ */
+export interface Spec extends TurboModule {
+    startConnection(): Promise<void>;
+    endConnection(): Promise<void>;
+    getConnectionState(): Promise<number>;
+    getConnectionStateSync(): number;
+    queryProductDetails(productIds: string[], productType: string, options: Object | null): Promise<Object[]>;
+    getCachedProductDetails(productIds: string[], productType: string): Object[];
+    isEntitled(productId: string): boolean;
+    getActiveEntitlements(): Object[];
+    configureProductDetailsCache(options: Object): Promise<void>;
+    clearProductDetailsCache(): Promise<void>;
+    configureProductDetailsBatching(options: Object): Promise<void>;
+    configureProductDetailsStore(options: Object): Promise<void>;
+    getProductDetailsStoreStats(): Promise<Object>;
+    getMetrics(): Promise<Object>;
+    resetMetrics(): Promise<void>;
+    configureCallbackExecutor(options: Object): Promise<void>;
+    configureRetryPolicy(options: Object): Promise<void>;
+    configurePurchaseVerification(options: Object): Promise<void>;
+    queryProductDetailsIfChanged(
+        productIds: string[],
+        productType: string,
+        etag: string | null,
+        options: Object | null,
+    ): Promise<Object>;
+    queryProductDetailsPaged(productIds: string[], productType: string, options: Object | null): Promise<Object>;
+    resolveOffer(productId: string, strategy: string, options: Object | null): Promise<Object | null>;
+    launchBillingFlow(
+        productId: string,
+        offerToken: string | null,
+        oldPurchaseToken: string | null,
+        subscriptionReplacementMode: number,
+        obfuscatedAccountId: string | null,
+        obfuscatedProfileId: string | null,
+    ): Promise<void>;
+    launchBundleBillingFlow(products: Object[], options: Object | null): Promise<void>;
+    launchBillingFlowForResult(productId: string, options: Object | null): Promise<Object>;
+    acknowledgePurchase(purchaseToken: string): Promise<void>;
+    acknowledgePurchases(purchaseTokens: string[], options: Object | null): Promise<Object>;
+    configurePendingOperations(options: Object): Promise<void>;
+    queryPurchaseHistory(productType: string): Promise<Object[] | null>;
+    queryPurchaseLedger(options: Object | null): Promise<Object>;
+    queryPurchases(productType: string, options: Object | null): Promise<Object[]>;
+    queryPurchasesIfChanged(productType: string, etag: string | null, options: Object | null): Promise<Object>;
+    queryPurchasesPaged(productType: string, options: Object | null): Promise<Object>;
+    fetchPage(cursor: string): Promise<Object>;
+    releaseCursor(cursor: string): Promise<void>;
+    addListener(eventName: string): void;
+    removeListeners(count: number): void;
+    removeEventListener(eventName: string): void;
+    resetEventListeners(): void;
+    consume(purchaseToken: string): Promise<void>;
+    consumeAll(purchaseTokens: string[], options: Object | null): Promise<Object>;
+}
+
+export default TurboModuleRegistry.get<Spec>('BillingSdk');
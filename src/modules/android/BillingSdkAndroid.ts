@@ -1,12 +1,21 @@
 import { NativeEventEmitter, NativeModules, Platform } from 'react-native';
+import NativeBillingSdk from '../../NativeBillingSdk';
 import { BillingSdkAndroidTypes } from './types';
 import { BillingSdkAndroidConstants } from './constants';
 
 const { BillingSdkEvent } = BillingSdkAndroidConstants;
-const BillingSdk = NativeModules.BillingSdk as BillingSdkAndroidTypes.IBillingSdkAndroidNative;
-const eventEmitter = new NativeEventEmitter(NativeModules.BillingSdk);
+type BillingSdkNative = BillingSdkAndroidTypes.IBillingSdkAndroidNative &
+    BillingSdkAndroidTypes.IBillingSdkAndroidNativeEvents;
+// The TurboModule when the new architecture is enabled, the bridge module otherwise.
+const BillingSdk = (NativeBillingSdk ?? NativeModules.BillingSdk) as unknown as BillingSdkNative;
+const eventEmitter = new NativeEventEmitter(NativeBillingSdk ?? NativeModules.BillingSdk);
 
 const isAndroid = Platform.OS === 'android';
+// The native module outlives the JS bundle, so the listener counts of a previous bundle are dropped.
+if (isAndroid) {
+    BillingSdk.resetEventListeners();
+}
+
 class BillingSdkAndroid implements BillingSdkAndroidTypes.IBillingSdkAndroid {
     private ensurePlatform = () => {
         if (isAndroid) {
@@ -18,32 +27,216 @@ class BillingSdkAndroid implements BillingSdkAndroidTypes.IBillingSdkAndroid {
     public startConnection = this.ensurePlatform() ?? BillingSdk.startConnection;
     public endConnection = this.ensurePlatform() ?? BillingSdk.endConnection;
     public getConnectionState = this.ensurePlatform() ?? BillingSdk.getConnectionState;
-    public queryProductDetails = this.ensurePlatform() ?? BillingSdk.queryProductDetails;
     public acknowledgePurchase = this.ensurePlatform() ?? BillingSdk.acknowledgePurchase;
     public queryPurchaseHistory = this.ensurePlatform() ?? BillingSdk.queryPurchaseHistory;
-    public queryPurchases = this.ensurePlatform() ?? BillingSdk.queryPurchases;
     public consume = this.ensurePlatform() ?? BillingSdk.consume;
+    public configureProductDetailsCache = this.ensurePlatform() ?? BillingSdk.configureProductDetailsCache;
+    public clearProductDetailsCache = this.ensurePlatform() ?? BillingSdk.clearProductDetailsCache;
+    public configureProductDetailsBatching = this.ensurePlatform() ?? BillingSdk.configureProductDetailsBatching;
+    public configureProductDetailsStore = this.ensurePlatform() ?? BillingSdk.configureProductDetailsStore;
+    public getProductDetailsStoreStats = this.ensurePlatform() ?? BillingSdk.getProductDetailsStoreStats;
+    public configurePendingOperations = this.ensurePlatform() ?? BillingSdk.configurePendingOperations;
+    public getMetrics = this.ensurePlatform() ?? BillingSdk.getMetrics;
+    public resetMetrics = this.ensurePlatform() ?? BillingSdk.resetMetrics;
+    public configureCallbackExecutor = this.ensurePlatform() ?? BillingSdk.configureCallbackExecutor;
+    public configureRetryPolicy = this.ensurePlatform() ?? BillingSdk.configureRetryPolicy;
+    public configurePurchaseVerification = this.ensurePlatform() ?? BillingSdk.configurePurchaseVerification;
+    public releaseCursor = this.ensurePlatform() ?? BillingSdk.releaseCursor;
+
+    public getConnectionStateSync = (): BillingSdkAndroidConstants.ConnectionState => {
+        if (!isAndroid) {
+            throw new Error('Unsupported platform.');
+        }
+
+        return BillingSdk.getConnectionStateSync();
+    };
+
+    public getCachedProductDetails = (
+        productIds: string[],
+        productType: BillingSdkAndroidConstants.ProductType,
+    ): BillingSdkAndroidTypes.ProductDetails[] => {
+        if (!isAndroid) {
+            throw new Error('Unsupported platform.');
+        }
+
+        return BillingSdk.getCachedProductDetails(productIds, productType);
+    };
+
+    public isEntitled = (productId: string): boolean => {
+        if (!isAndroid) {
+            throw new Error('Unsupported platform.');
+        }
+
+        return BillingSdk.isEntitled(productId);
+    };
+
+    public getActiveEntitlements = (): BillingSdkAndroidTypes.Entitlement[] => {
+        if (!isAndroid) {
+            throw new Error('Unsupported platform.');
+        }
+
+        return BillingSdk.getActiveEntitlements();
+    };
+
+    // The returned remover does nothing after its first call, so that it never removes another listener of the event.
+    private addEventListener = <T>(
+        eventName: BillingSdkAndroidConstants.BillingSdkEvent,
+        listener: (params: T) => void,
+    ): BillingSdkAndroidTypes.RemoveListener => {
+        const eventListener = eventEmitter.addListener(eventName, listener);
+        let removed = false;
+        return () => {
+            if (removed) {
+                return;
+            }
+
+            removed = true;
+            BillingSdk.removeEventListener(eventName);
+            eventListener.remove();
+        };
+    };
 
     public setPurchaseUpdatedListener = (listener: BillingSdkAndroidTypes.PurchaseUpdatedListener) => {
-        const eventListener = eventEmitter.addListener(BillingSdkEvent.PURCHASE_UPDATED, listener);
-        return eventListener.remove;
+        return this.addEventListener(BillingSdkEvent.PURCHASE_UPDATED, listener);
     };
 
     public setBillingServiceDisconnectedListener = (
         listener: BillingSdkAndroidTypes.BillingServiceDisconnectedListener,
     ) => {
-        const eventListener = eventEmitter.addListener(BillingSdkEvent.BILLING_SERVICE_DISCONNECTED, listener);
-        return eventListener.remove;
+        return this.addEventListener(BillingSdkEvent.BILLING_SERVICE_DISCONNECTED, listener);
+    };
+
+    public setProductDetailsUpdatedListener = (listener: BillingSdkAndroidTypes.ProductDetailsUpdatedListener) => {
+        return this.addEventListener(BillingSdkEvent.PRODUCT_DETAILS_UPDATED, listener);
+    };
+
+    public setPurchasesChangedListener = (listener: BillingSdkAndroidTypes.PurchasesChangedListener) => {
+        return this.addEventListener(BillingSdkEvent.PURCHASES_CHANGED, listener);
+    };
+
+    public setPendingOperationResultListener = (listener: BillingSdkAndroidTypes.PendingOperationResultListener) => {
+        return this.addEventListener(BillingSdkEvent.PENDING_OPERATION_RESULT, listener);
+    };
+
+    public queryProductDetails = async (
+        productIds: string[],
+        productType: BillingSdkAndroidConstants.ProductType,
+        options?: BillingSdkAndroidTypes.QueryOptions | null,
+    ): Promise<BillingSdkAndroidTypes.ProductDetails[]> => {
+        if (!isAndroid) {
+            return Promise.reject('Unsupported platform.');
+        }
+
+        return BillingSdk.queryProductDetails(productIds, productType, options ?? null);
+    };
+
+    public queryPurchases = async (
+        productType: BillingSdkAndroidConstants.ProductType,
+        options?: BillingSdkAndroidTypes.QueryOptions | null,
+    ): Promise<BillingSdkAndroidTypes.Purchase[]> => {
+        if (!isAndroid) {
+            return Promise.reject('Unsupported platform.');
+        }
+
+        return BillingSdk.queryPurchases(productType, options ?? null);
+    };
+
+    public queryProductDetailsIfChanged = async (
+        productIds: string[],
+        productType: BillingSdkAndroidConstants.ProductType,
+        etag?: string | null,
+        options?: BillingSdkAndroidTypes.QueryOptions | null,
+    ): Promise<BillingSdkAndroidTypes.IfChangedResult<BillingSdkAndroidTypes.ProductDetails>> => {
+        if (!isAndroid) {
+            return Promise.reject('Unsupported platform.');
+        }
+
+        return BillingSdk.queryProductDetailsIfChanged(productIds, productType, etag ?? null, options ?? null);
+    };
+
+    public queryPurchasesIfChanged = async (
+        productType: BillingSdkAndroidConstants.ProductType,
+        etag?: string | null,
+        options?: BillingSdkAndroidTypes.QueryOptions | null,
+    ): Promise<BillingSdkAndroidTypes.IfChangedResult<BillingSdkAndroidTypes.Purchase>> => {
+        if (!isAndroid) {
+            return Promise.reject('Unsupported platform.');
+        }
+
+        return BillingSdk.queryPurchasesIfChanged(productType, etag ?? null, options ?? null);
+    };
+
+    public queryProductDetailsPaged = async (
+        productIds: string[],
+        productType: BillingSdkAndroidConstants.ProductType,
+        options?: BillingSdkAndroidTypes.PagedQueryOptions | null,
+    ): Promise<BillingSdkAndroidTypes.Page<BillingSdkAndroidTypes.ProductDetails>> => {
+        if (!isAndroid) {
+            return Promise.reject('Unsupported platform.');
+        }
+
+        return BillingSdk.queryProductDetailsPaged(productIds, productType, options ?? null);
+    };
+
+    public queryPurchasesPaged = async (
+        productType: BillingSdkAndroidConstants.ProductType,
+        options?: BillingSdkAndroidTypes.PagedQueryOptions | null,
+    ): Promise<BillingSdkAndroidTypes.Page<BillingSdkAndroidTypes.Purchase>> => {
+        if (!isAndroid) {
+            return Promise.reject('Unsupported platform.');
+        }
+
+        return BillingSdk.queryPurchasesPaged(productType, options ?? null);
+    };
+
+    public queryPurchaseLedger = async (
+        query?: BillingSdkAndroidTypes.PurchaseLedgerQuery | null,
+    ): Promise<BillingSdkAndroidTypes.Page<BillingSdkAndroidTypes.PurchaseLedgerRecord>> => {
+        if (!isAndroid) {
+            return Promise.reject('Unsupported platform.');
+        }
+
+        return BillingSdk.queryPurchaseLedger(query ?? null);
+    };
+
+    public fetchPage = async <T>(cursor: string): Promise<BillingSdkAndroidTypes.Page<T>> => {
+        if (!isAndroid) {
+            return Promise.reject('Unsupported platform.');
+        }
+
+        return BillingSdk.fetchPage<T>(cursor);
+    };
+
+    public acknowledgePurchases = async (
+        purchaseTokens: string[],
+        options?: BillingSdkAndroidTypes.BatchOptions | null,
+    ): Promise<BillingSdkAndroidTypes.TokenOperationResults> => {
+        if (!isAndroid) {
+            return Promise.reject('Unsupported platform.');
+        }
+
+        return BillingSdk.acknowledgePurchases(purchaseTokens, options ?? null);
+    };
+
+    public consumeAll = async (
+        purchaseTokens: string[],
+        options?: BillingSdkAndroidTypes.BatchOptions | null,
+    ): Promise<BillingSdkAndroidTypes.TokenOperationResults> => {
+        if (!isAndroid) {
+            return Promise.reject('Unsupported platform.');
+        }
+
+        return BillingSdk.consumeAll(purchaseTokens, options ?? null);
     };
 
     public launchBillingFlow = async (
         productId: string,
-        offerToken?: string,
-        oldPurchaseToken?: string,
+        offerToken?: string | null,
+        oldPurchaseToken?: string | null,
         subscriptionReplacementMode: BillingSdkAndroidConstants.SubscriptionReplacementMode = BillingSdkAndroidConstants
             .SubscriptionReplacementMode.UNKNOWN_REPLACEMENT_MODE,
-        obfuscatedAccountId?: string,
-        obfuscatedProfileId?: string,
+        obfuscatedAccountId?: string | null,
+        obfuscatedProfileId?: string | null,
     ): Promise<void> => {
         if (!isAndroid) {
             return Promise.reject('Unsupported platform.');
@@ -51,13 +244,47 @@ class BillingSdkAndroid implements BillingSdkAndroidTypes.IBillingSdkAndroid {
 
         return BillingSdk.launchBillingFlow(
             productId,
-            offerToken,
-            oldPurchaseToken,
+            offerToken ?? null,
+            oldPurchaseToken ?? null,
             subscriptionReplacementMode,
-            obfuscatedAccountId,
-            obfuscatedProfileId,
+            obfuscatedAccountId ?? null,
+            obfuscatedProfileId ?? null,
         );
     };
+
+    public resolveOffer = async (
+        productId: string,
+        strategy: BillingSdkAndroidConstants.OfferStrategy,
+        options?: BillingSdkAndroidTypes.ResolveOfferOptions | null,
+    ): Promise<BillingSdkAndroidTypes.ResolvedOffer | null> => {
+        if (!isAndroid) {
+            return Promise.reject('Unsupported platform.');
+        }
+
+        return BillingSdk.resolveOffer(productId, strategy, options ?? null);
+    };
+
+    public launchBundleBillingFlow = async (
+        products: BillingSdkAndroidTypes.BillingFlowProduct[],
+        options?: BillingSdkAndroidTypes.BillingFlowOptions | null,
+    ): Promise<void> => {
+        if (!isAndroid) {
+            return Promise.reject('Unsupported platform.');
+        }
+
+        return BillingSdk.launchBundleBillingFlow(products, options ?? null);
+    };
+
+    public launchBillingFlowForResult = async (
+        productId: string,
+        options?: BillingSdkAndroidTypes.BillingFlowForResultOptions | null,
+    ): Promise<BillingSdkAndroidTypes.Purchase> => {
+        if (!isAndroid) {
+            return Promise.reject('Unsupported platform.');
+        }
+
+        return BillingSdk.launchBillingFlowForResult(productId, options ?? null);
+    };
 }
 
 export default new BillingSdkAndroid();
@@ -17,6 +17,13 @@ export namespace BillingSdkAndroidConstants {
         PENDING = 2,
     }
 
+    export enum OfferStrategy {
+        CHEAPEST = 'cheapest',
+        FREE_TRIAL = 'freeTrial',
+        BASE_PLAN = 'basePlan',
+        TAG = 'tag',
+    }
+
     export enum SubscriptionReplacementMode {
         CHARGE_FULL_PRICE = 5,
         CHARGE_PRORATED_PRICE = 2,
@@ -45,6 +52,8 @@ export namespace BillingSdkAndroidConstants {
         // SDK BRIDGE ERROR CODES
         E_ACTIVITY_NULL = '100',
         E_PRODUCT_NOT_QUERIED = '101',
+        E_INVALID_OFFER = '102',
+        E_PURCHASE_TIMEOUT = '103',
     }
 
     export enum ConnectionState {
@@ -57,5 +66,8 @@ export namespace BillingSdkAndroidConstants {
     export enum BillingSdkEvent {
         PURCHASE_UPDATED = 'billing-manager-purchase-updated',
         BILLING_SERVICE_DISCONNECTED = 'billing-manager-service-disconnected',
+        PRODUCT_DETAILS_UPDATED = 'billing-manager-product-details-updated',
+        PURCHASES_CHANGED = 'billing-manager-purchases-changed',
+        PENDING_OPERATION_RESULT = 'billing-manager-pending-operation-result',
     }
 }
@@ -70,6 +70,217 @@ export namespace BillingSdkAndroidTypes {
         signature: string;
         isAcknowledged: boolean;
         isAutoRenewing: boolean;
+        verified?: boolean;
+    };
+
+    export type QueryOptions = {
+        fields?: string[];
+    };
+
+    export type IfChangedResult<T> = {
+        etag: string;
+        unchanged: boolean;
+        items: T[] | null;
+    };
+
+    export type Entitlement = {
+        productId: string;
+        productType: BillingSdkAndroidConstants.ProductType | null;
+        purchaseToken: string;
+        isAcknowledged: boolean;
+        isAutoRenewing: boolean;
+        quantity: number;
+        purchaseTime: number;
+        syncedAt: number | null;
+    };
+
+    export type PagedQueryOptions = QueryOptions & {
+        pageSize?: number;
+    };
+
+    export type Page<T> = {
+        cursor: string | null;
+        items: T[];
+        total: number;
+        hasMore: boolean;
+    };
+
+    export type PurchaseLedgerStatus = 'pending' | 'purchased' | 'consumed' | 'inactive';
+
+    export type PurchaseLedgerRecord = {
+        purchaseToken: string;
+        products: string[];
+        productType: BillingSdkAndroidConstants.ProductType | null;
+        orderId: string | null;
+        purchaseTime: number;
+        quantity: number;
+        status: PurchaseLedgerStatus;
+        isAcknowledged: boolean;
+        isAutoRenewing: boolean;
+        firstSeenAt: number;
+        updatedAt: number;
+    };
+
+    export type PurchaseLedgerQuery = {
+        productId?: string;
+        purchaseToken?: string;
+        startTime?: number;
+        endTime?: number;
+        pageSize?: number;
+    };
+
+    export type ResolveOfferOptions = {
+        tag?: string;
+        basePlanId?: string;
+    };
+
+    export type ResolvedOffer = {
+        offerToken: string;
+        basePlanId: string;
+        offerId: string | null;
+        offerTags: string[];
+        monthlyPriceMicros: string;
+        firstYearPriceMicros: string;
+        priceCurrencyCode: string;
+        freeTrialDays: number;
+    };
+
+    export type BillingFlowProduct = {
+        productId: string;
+        offerToken?: string | null;
+    };
+
+    export type BillingFlowOptions = {
+        oldPurchaseToken?: string | null;
+        subscriptionReplacementMode?: BillingSdkAndroidConstants.SubscriptionReplacementMode;
+        obfuscatedAccountId?: string | null;
+        obfuscatedProfileId?: string | null;
+    };
+
+    export type BillingFlowForResultOptions = BillingFlowOptions & {
+        offerToken?: string | null;
+        timeout?: number;
+    };
+
+    export type BatchOptions = {
+        concurrency?: number;
+    };
+
+    export type TokenOperationResult = {
+        ok: boolean;
+        responseCode: BillingSdkAndroidConstants.ResponseCode;
+        debugMessage: string;
+    };
+
+    export type TokenOperationResults = Record<string, TokenOperationResult>;
+
+    export type ProductDetailsCacheOptions = {
+        enabled: boolean;
+        ttl?: number;
+        revalidateAfter?: number;
+    };
+
+    export type ProductDetailsBatchingOptions = {
+        window: number;
+    };
+
+    export type ProductDetailsStoreOptions = {
+        maxSize?: number;
+        ttl?: number;
+    };
+
+    export type PendingOperationsOptions = {
+        enabled: boolean;
+        maxAttempts?: number;
+        baseDelay?: number;
+        maxDelay?: number;
+    };
+
+    export type ProductDetailsStoreStats = {
+        size: number;
+        maxSize: number;
+        hits: number;
+        misses: number;
+        evictions: number;
+    };
+
+    export type OperationMetrics = {
+        count: number;
+        mean: number;
+        max: number;
+        p50: number;
+        p95: number;
+        p99: number;
+        responseCodes: Partial<Record<string, number>>;
+    };
+
+    export type ConnectionMetrics = {
+        connected: boolean;
+        currentUptime: number;
+        totalUptime: number;
+        connections: number;
+        disconnections: number;
+    };
+
+    export type CallbackExecutorMetrics = {
+        threads: number;
+        activeThreads: number;
+        queueSize: number;
+        queued: number;
+        submitted: number;
+        completed: number;
+        callerRuns: number;
+        overflowed: number;
+        meanQueueTime: number;
+        maxQueueTime: number;
+    };
+
+    export type EventMetrics = {
+        listeners: Partial<Record<BillingSdkAndroidConstants.BillingSdkEvent, number>>;
+        emitted: number;
+        dropped: number;
+        coalesced: number;
+        replayed: number;
+        undelivered: number;
+    };
+
+    export type Metrics = {
+        operations: Partial<Record<string, OperationMetrics>>;
+        connection: ConnectionMetrics;
+        callbackExecutor: CallbackExecutorMetrics;
+        events: EventMetrics;
+        openCursors: number;
+        retryPolicy: RetryPolicyMetrics;
+    };
+
+    export type RetryPolicyOptions = {
+        enabled: boolean;
+        maxAttempts?: number;
+        baseDelay?: number;
+        maxDelay?: number;
+        failureThreshold?: number;
+        openDuration?: number;
+        hedgeDelay?: number;
+    };
+
+    export type RetryPolicyMetrics = {
+        enabled: boolean;
+        circuit: 'closed' | 'open' | 'halfOpen';
+        calls: number;
+        retries: number;
+        hedges: number;
+        hedgeWins: number;
+        shortCircuits: number;
+        circuitOpens: number;
+    };
+
+    export type PurchaseVerificationOptions = {
+        publicKey: string | null;
+    };
+
+    export type CallbackExecutorOptions = {
+        threads?: number;
+        queueSize?: number;
     };
 
     export interface BillingSdkError extends Error {
@@ -80,24 +291,78 @@ export namespace BillingSdkAndroidTypes {
         startConnection: () => Promise<void>;
         endConnection: () => Promise<void>;
         getConnectionState: () => Promise<BillingSdkAndroidConstants.ConnectionState>;
+        getConnectionStateSync: () => BillingSdkAndroidConstants.ConnectionState;
+        getCachedProductDetails: (
+            productIds: string[],
+            productType: BillingSdkAndroidConstants.ProductType,
+        ) => ProductDetails[];
+        isEntitled: (productId: string) => boolean;
+        getActiveEntitlements: () => Entitlement[];
         queryProductDetails: (
             productIds: string[],
             productType: BillingSdkAndroidConstants.ProductType,
+            options?: QueryOptions | null,
         ) => Promise<ProductDetails[]>;
         launchBillingFlow: (
             productId: string,
-            offerToken?: string,
-            oldPurchaseToken?: string,
+            offerToken?: string | null,
+            oldPurchaseToken?: string | null,
             subscriptionReplacementMode?: BillingSdkAndroidConstants.SubscriptionReplacementMode,
-            obfuscatedAccountId?: string,
-            obfuscatedProfileId?: string,
+            obfuscatedAccountId?: string | null,
+            obfuscatedProfileId?: string | null,
         ) => Promise<void>;
+        resolveOffer: (
+            productId: string,
+            strategy: BillingSdkAndroidConstants.OfferStrategy,
+            options?: ResolveOfferOptions | null,
+        ) => Promise<ResolvedOffer | null>;
+        launchBundleBillingFlow: (products: BillingFlowProduct[], options?: BillingFlowOptions | null) => Promise<void>;
+        launchBillingFlowForResult: (productId: string, options?: BillingFlowForResultOptions | null) => Promise<Purchase>;
         acknowledgePurchase: (purchaseToken: string) => Promise<void>;
         queryPurchaseHistory: (
             productType: BillingSdkAndroidConstants.ProductType,
         ) => Promise<PurchaseHistoryRecord[] | null>;
-        queryPurchases: (productType: BillingSdkAndroidConstants.ProductType) => Promise<Purchase[]>;
+        queryPurchases: (
+            productType: BillingSdkAndroidConstants.ProductType,
+            options?: QueryOptions | null,
+        ) => Promise<Purchase[]>;
         consume: (purchaseToken: string) => Promise<void>;
+        acknowledgePurchases: (purchaseTokens: string[], options?: BatchOptions | null) => Promise<TokenOperationResults>;
+        consumeAll: (purchaseTokens: string[], options?: BatchOptions | null) => Promise<TokenOperationResults>;
+        queryProductDetailsIfChanged: (
+            productIds: string[],
+            productType: BillingSdkAndroidConstants.ProductType,
+            etag?: string | null,
+            options?: QueryOptions | null,
+        ) => Promise<IfChangedResult<ProductDetails>>;
+        queryPurchasesIfChanged: (
+            productType: BillingSdkAndroidConstants.ProductType,
+            etag?: string | null,
+            options?: QueryOptions | null,
+        ) => Promise<IfChangedResult<Purchase>>;
+        configureProductDetailsCache: (options: ProductDetailsCacheOptions) => Promise<void>;
+        clearProductDetailsCache: () => Promise<void>;
+        configureProductDetailsBatching: (options: ProductDetailsBatchingOptions) => Promise<void>;
+        configureProductDetailsStore: (options: ProductDetailsStoreOptions) => Promise<void>;
+        getProductDetailsStoreStats: () => Promise<ProductDetailsStoreStats>;
+        configurePendingOperations: (options: PendingOperationsOptions) => Promise<void>;
+        getMetrics: () => Promise<Metrics>;
+        resetMetrics: () => Promise<void>;
+        configureCallbackExecutor: (options: CallbackExecutorOptions) => Promise<void>;
+        configureRetryPolicy: (options: RetryPolicyOptions) => Promise<void>;
+        configurePurchaseVerification: (options: PurchaseVerificationOptions) => Promise<void>;
+        queryProductDetailsPaged: (
+            productIds: string[],
+            productType: BillingSdkAndroidConstants.ProductType,
+            options?: PagedQueryOptions | null,
+        ) => Promise<Page<ProductDetails>>;
+        queryPurchasesPaged: (
+            productType: BillingSdkAndroidConstants.ProductType,
+            options?: PagedQueryOptions | null,
+        ) => Promise<Page<Purchase>>;
+        fetchPage: <T>(cursor: string) => Promise<Page<T>>;
+        releaseCursor: (cursor: string) => Promise<void>;
+        queryPurchaseLedger: (query?: PurchaseLedgerQuery | null) => Promise<Page<PurchaseLedgerRecord>>;
     }
 
     export type PurchaseUpdatedListenerParams = {
@@ -108,10 +373,60 @@ export namespace BillingSdkAndroidTypes {
 
     export type PurchaseUpdatedListener = (params: PurchaseUpdatedListenerParams) => void;
     export type BillingServiceDisconnectedListener = () => void;
+
+    export type ProductDetailsUpdatedListenerParams = {
+        productType: BillingSdkAndroidConstants.ProductType;
+        products: ProductDetails[];
+    };
+
+    export type ProductDetailsUpdatedListener = (params: ProductDetailsUpdatedListenerParams) => void;
+
+    export type PurchaseChange = {
+        purchase: Purchase;
+        previousPurchaseState: BillingSdkAndroidConstants.PurchaseState;
+        previousIsAcknowledged: boolean;
+        previousIsAutoRenewing: boolean;
+        previousQuantity: number;
+    };
+
+    export type PurchaseRemoval = {
+        purchaseToken: string;
+        productId: string;
+        productType: BillingSdkAndroidConstants.ProductType | null;
+    };
+
+    export type PurchasesChangedListenerParams = {
+        added: Purchase[];
+        changed: PurchaseChange[];
+        removed: PurchaseRemoval[];
+    };
+
+    export type PurchasesChangedListener = (params: PurchasesChangedListenerParams) => void;
+
+    export type PendingOperationResultListenerParams = {
+        type: 'acknowledge' | 'consume';
+        purchaseToken: string;
+        ok: boolean;
+        responseCode: BillingSdkAndroidConstants.ResponseCode;
+        debugMessage: string;
+        attempts: number;
+        willRetry: boolean;
+    };
+
+    export type PendingOperationResultListener = (params: PendingOperationResultListenerParams) => void;
     export type RemoveListener = () => void;
 
+    // Listener bookkeeping of the native module, only called by BillingSdkAndroid itself.
+    export interface IBillingSdkAndroidNativeEvents {
+        removeEventListener: (eventName: BillingSdkAndroidConstants.BillingSdkEvent) => void;
+        resetEventListeners: () => void;
+    }
+
     export interface IBillingSdkAndroid extends IBillingSdkAndroidNative {
         setPurchaseUpdatedListener: (listener: PurchaseUpdatedListener) => RemoveListener;
         setBillingServiceDisconnectedListener: (listener: BillingServiceDisconnectedListener) => RemoveListener;
+        setProductDetailsUpdatedListener: (listener: ProductDetailsUpdatedListener) => RemoveListener;
+        setPurchasesChangedListener: (listener: PurchasesChangedListener) => RemoveListener;
+        setPendingOperationResultListener: (listener: PendingOperationResultListener) => RemoveListener;
     }
 }